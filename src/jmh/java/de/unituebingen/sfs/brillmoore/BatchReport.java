@@ -0,0 +1,112 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics;
+
+/**
+ * Compares scoring the development data in batches that share the cells of
+ * common prefixes (see SpellChecker.getRankedCandidates(List, int)) with
+ * scoring each misspelling on its own: the cells, rule lookups and time
+ * per misspelling for batches of the sorted and of the shuffled
+ * misspellings. The batches must return the same candidates.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbenchmark.main=de.unituebingen.sfs.brillmoore.BatchReport
+ * </pre>
+ *
+ * The arguments (in jmh.args) are the batch sizes to compare (default 8 32
+ * 128 421).
+ */
+public class BatchReport {
+	private static final int K = 10;
+	private static final int DICT_SIZE = 171107;
+
+	public static void main(String[] args) throws IOException, ParseException {
+		int[] sizes = args.length > 0 ? new int[args.length] : new int[] { 8, 32, 128, 421 };
+		for (int i = 0; i < args.length; i++) {
+			sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		SpellChecker spellchecker = new SpellChecker(BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE),
+				BenchmarkData.readDict(DICT_SIZE), 3, 0.8);
+		SpellCheckerMetrics metrics = spellchecker.getMetrics();
+
+		List<String> sorted = new ArrayList<>();
+		for (Misspelling m : BenchmarkData.readMisspellings(BenchmarkData.TEST_FILE)) {
+			sorted.add(m.getSource());
+		}
+		Collections.sort(sorted);
+		List<String> shuffled = new ArrayList<>(sorted);
+		Collections.shuffle(shuffled, new Random(1));
+		int n = sorted.size();
+
+		// warm up both searches
+		spellchecker.getRankedCandidates(sorted.subList(0, 50), K);
+		for (String m : shuffled.subList(0, 50)) {
+			spellchecker.getRankedCandidates(m, K);
+		}
+
+		List<List<Candidate>> single = new ArrayList<>();
+		metrics.reset();
+		long start = System.nanoTime();
+		for (String m : sorted) {
+			single.add(spellchecker.getRankedCandidates(m, K));
+		}
+		long singleNanos = System.nanoTime() - start;
+
+		System.out.printf(Locale.US, "%d misspellings, %d words, k = %d%n", n, DICT_SIZE, K);
+		System.out.printf(Locale.US, "%-9s %6s %11s %11s %11s %9s %9s %9s%n", "order", "batch", "cells/q",
+				"lookups/q", "nodes/q", "ms/query", "speedup", "differ");
+		System.out.printf(Locale.US, "%-9s %6d %11.0f %11.0f %11.0f %9.2f %9s %9s%n", "-", 1,
+				(double) metrics.getCellsComputed() / n, (double) metrics.getRuleLookups() / n,
+				(double) metrics.getNodesVisited() / n, singleNanos / 1e6 / n, "1.0", "-");
+
+		for (boolean shuffle : new boolean[] { false, true }) {
+			List<String> misspellings = shuffle ? shuffled : sorted;
+
+			for (int size : sizes) {
+				List<List<Candidate>> batches = new ArrayList<>();
+				metrics.reset();
+				start = System.nanoTime();
+				for (int i = 0; i < n; i += size) {
+					batches.addAll(spellchecker.getRankedCandidates(misspellings.subList(i, Math.min(i + size, n)), K));
+				}
+				long nanos = System.nanoTime() - start;
+
+				int differ = 0;
+				for (int i = 0; i < n; i++) {
+					List<Candidate> expected = single.get(sorted.indexOf(misspellings.get(i)));
+					if (!isSame(batches.get(i), expected)) {
+						differ++;
+					}
+				}
+
+				System.out.printf(Locale.US, "%-9s %6d %11.0f %11.0f %11.0f %9.2f %9.1f %9d%n",
+						shuffle ? "shuffled" : "sorted", size, (double) metrics.getCellsComputed() / n,
+						(double) metrics.getRuleLookups() / n, (double) metrics.getNodesVisited() / n,
+						nanos / 1e6 / n, (double) singleNanos / nanos, differ);
+			}
+		}
+	}
+
+	private static boolean isSame(List<Candidate> a, List<Candidate> b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < a.size(); i++) {
+			if (!a.get(i).getTarget().equals(b.get(i).getTarget()) || !a.get(i).getProb().equals(b.get(i).getProb())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,133 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics;
+
+/**
+ * Compares the beam search (see SpellChecker.setBeamWidth()) with the exact
+ * search on the development and testing data: how often the best candidate,
+ * the ranked k best candidates and the set of the k best candidates differ,
+ * how many of the exact k best candidates are found, how often the best
+ * candidate is the target and the work and time per query.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbenchmark.main=de.unituebingen.sfs.brillmoore.BeamSearchReport
+ * </pre>
+ *
+ * The arguments (in jmh.args) are the beam widths to compare (default 10 50
+ * 200 1000).
+ */
+public class BeamSearchReport {
+	private static final int K = 10;
+	private static final int DICT_SIZE = 171107;
+
+	public static void main(String[] args) throws IOException, ParseException {
+		int[] widths = args.length > 0 ? new int[args.length] : new int[] { 10, 50, 200, 1000 };
+		for (int i = 0; i < args.length; i++) {
+			widths[i] = Integer.parseInt(args[i]);
+		}
+
+		SpellChecker spellchecker = new SpellChecker(BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE),
+				BenchmarkData.readDict(DICT_SIZE), 3, 0.8);
+		SpellCheckerMetrics metrics = spellchecker.getMetrics();
+
+		// warm up the beam search, so that the first width is not slower
+		for (int width : widths) {
+			spellchecker.setBeamWidth(width);
+			for (Misspelling m : BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE).subList(0, 200)) {
+				spellchecker.getRankedCandidates(m.getSource(), K);
+			}
+		}
+
+		for (String testFile : new String[] { BenchmarkData.TEST_FILE, "aspell-common.test" }) {
+			List<Misspelling> queries = BenchmarkData.readMisspellings(testFile);
+			int n = queries.size();
+
+			@SuppressWarnings("unchecked")
+			List<Candidate>[] exact = new List[n];
+			spellchecker.setBeamWidth(0);
+			metrics.reset();
+			for (int i = 0; i < n; i++) {
+				exact[i] = spellchecker.getRankedCandidates(queries.get(i).getSource(), K);
+			}
+			double exactNanos = metrics.getLatency().getMeanNanos();
+
+			System.out.printf(Locale.US, "%s: %d misspellings, %d words, k = %d%n", testFile, n, DICT_SIZE, K);
+			System.out.printf(Locale.US, "%-6s %9s %9s %9s %9s %9s %10s %9s %9s %9s%n", "beam", "top1 diff",
+					"topk diff", "set diff", "recall@k", "top1 acc", "nodes", "ms/query", "p99 ms", "speedup");
+			System.out.printf(Locale.US, "%-6s %9s %9s %9s %9s %9.3f %10.0f %9.2f %9.2f %9s%n", "exact", "-", "-", "-", "-",
+					getAccuracy(queries, exact), (double) metrics.getNodesVisited() / n, exactNanos / 1e6,
+					metrics.getLatency99Millis(), "1.0");
+
+			for (int width : widths) {
+				@SuppressWarnings("unchecked")
+				List<Candidate>[] beam = new List[n];
+				spellchecker.setBeamWidth(width);
+				metrics.reset();
+				for (int i = 0; i < n; i++) {
+					beam[i] = spellchecker.getRankedCandidates(queries.get(i).getSource(), K);
+				}
+
+				int top1 = 0;
+				int topk = 0;
+				int set = 0;
+				int found = 0;
+				int total = 0;
+				for (int i = 0; i < n; i++) {
+					if (!getTarget(beam[i], 0).equals(getTarget(exact[i], 0))) {
+						top1++;
+					}
+					if (!getTargets(beam[i]).equals(getTargets(exact[i]))) {
+						topk++;
+					}
+					Set<String> beamTargets = new HashSet<>(getTargets(beam[i]));
+					if (!beamTargets.equals(new HashSet<>(getTargets(exact[i])))) {
+						set++;
+					}
+					for (Candidate c : exact[i]) {
+						if (beamTargets.contains(c.getTarget())) {
+							found++;
+						}
+					}
+					total += exact[i].size();
+				}
+
+				System.out.printf(Locale.US, "%-6d %9.3f %9.3f %9.3f %9.3f %9.3f %10.0f %9.2f %9.2f %9.1f%n", width,
+						(double) top1 / n, (double) topk / n, (double) set / n, (double) found / total,
+						getAccuracy(queries, beam),
+						(double) metrics.getNodesVisited() / n, metrics.getMeanLatencyMillis(),
+						metrics.getLatency99Millis(), exactNanos / metrics.getLatency().getMeanNanos());
+			}
+			System.out.println();
+		}
+	}
+
+	private static String getTarget(List<Candidate> candidates, int i) {
+		return i < candidates.size() ? candidates.get(i).getTarget() : "";
+	}
+
+	private static List<String> getTargets(List<Candidate> candidates) {
+		List<String> targets = new ArrayList<>();
+		for (Candidate c : candidates) {
+			targets.add(c.getTarget());
+		}
+		return targets;
+	}
+
+	private static double getAccuracy(List<Misspelling> queries, List<Candidate>[] candidates) {
+		int correct = 0;
+		for (int i = 0; i < queries.size(); i++) {
+			if (getTarget(candidates[i], 0).equals(queries.get(i).getTarget())) {
+				correct++;
+			}
+		}
+		return (double) correct / queries.size();
+	}
+}
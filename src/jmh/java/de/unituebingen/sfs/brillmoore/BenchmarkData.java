@@ -0,0 +1,91 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the bundled Aspell data in data/ (or the directory in the system
+ * property brillmoore.data) for the benchmarks.
+ */
+public class BenchmarkData {
+	public static final String TRAIN_FILE = "aspell-common.train";
+	public static final String TEST_FILE = "aspell-common.dev";
+	public static final String DICT_FILE = "aspell-wordlist-en_USGBsGBz.70-1.txt";
+
+	private static File getFile(String name) {
+		return new File(System.getProperty("brillmoore.data", "data"), name);
+	}
+
+	/**
+	 * Read misspellings, tab-separated: misspelling, target, count
+	 */
+	public static List<Misspelling> readMisspellings(String name) throws IOException {
+		List<Misspelling> misspellings = new ArrayList<>();
+
+		try (BufferedReader input = new BufferedReader(new FileReader(getFile(name)))) {
+			String line;
+			while ((line = input.readLine()) != null) {
+				String[] lineParts = line.split("\t");
+				int count = lineParts.length >= 3 ? Integer.parseInt(lineParts[2]) : 1;
+				misspellings.add(new Misspelling(lineParts[0], lineParts[1], count));
+			}
+		}
+
+		return misspellings;
+	}
+
+	/**
+	 * Read misspellings with a length from minLength to maxLength.
+	 */
+	public static List<Misspelling> readMisspellings(String name, int minLength, int maxLength) throws IOException {
+		List<Misspelling> misspellings = new ArrayList<>();
+
+		for (Misspelling m : readMisspellings(name)) {
+			if (m.getSource().length() >= minLength && m.getSource().length() <= maxLength) {
+				misspellings.add(m);
+			}
+		}
+
+		if (misspellings.isEmpty()) {
+			throw new IllegalArgumentException("There are no misspellings with a length from " + minLength + " to " +
+					maxLength + " in " + name + ".");
+		}
+
+		return misspellings;
+	}
+
+	/**
+	 * Read an evenly spaced sample of the word list, so that smaller
+	 * dictionaries are not limited to the beginning of the alphabet.
+	 *
+	 * @param size number of words (at most the size of the word list)
+	 * @return dictionary with all words equally likely
+	 */
+	public static Map<String, Double> readDict(int size) throws IOException {
+		List<String> words = new ArrayList<>();
+
+		try (BufferedReader input = new BufferedReader(new FileReader(getFile(DICT_FILE)))) {
+			String line;
+			while ((line = input.readLine()) != null) {
+				words.add(line.split("\t")[0]);
+			}
+		}
+
+		if (size > words.size()) {
+			throw new IllegalArgumentException("The word list only contains " + words.size() + " words.");
+		}
+
+		Map<String, Double> dict = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			dict.put(words.get((int) ((long) i * words.size() / size)), 1.0);
+		}
+
+		return dict;
+	}
+}
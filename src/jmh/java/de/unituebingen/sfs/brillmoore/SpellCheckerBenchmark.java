@@ -0,0 +1,55 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scoring misspellings from the Aspell dev set against a sample of the
+ * Aspell word list, with a model trained on the Aspell training set. Each
+ * operation ranks the 10 best candidates for one misspelling, cycling
+ * through the misspellings with a length from misspellingLength to
+ * misspellingLength + 2.
+ */
+@State(Scope.Thread)
+public class SpellCheckerBenchmark {
+	@Param({ "10000", "50000", "171107" })
+	public int dictSize;
+
+	@Param({ "0", "3" })
+	public int window;
+
+	@Param({ "5", "8", "11" })
+	public int misspellingLength;
+
+	private SpellChecker spellchecker;
+	private String[] misspellings;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException, ParseException {
+		spellchecker = new SpellChecker(BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE),
+				BenchmarkData.readDict(dictSize), window, 0.8);
+
+		List<Misspelling> test = BenchmarkData.readMisspellings(BenchmarkData.TEST_FILE, misspellingLength,
+				misspellingLength + 2);
+		misspellings = new String[test.size()];
+		for (int i = 0; i < misspellings.length; i++) {
+			misspellings[i] = test.get(i).getSource();
+		}
+	}
+
+	@Benchmark
+	public List<Candidate> getRankedCandidates() throws ParseException {
+		String m = misspellings[next];
+		next = (next + 1) % misspellings.length;
+
+		return spellchecker.getRankedCandidates(m, 10);
+	}
+}
@@ -0,0 +1,115 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compares the candidates of a symmetric delete index with a search of the
+ * whole dictionary on the development data: how often the index generates
+ * the target, how many of the full search's 1 and 10 best candidates it
+ * keeps, how often the best candidate is the target and the mean time per
+ * query.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbenchmark.main=de.unituebingen.sfs.brillmoore.SymmetricDeleteReport
+ * </pre>
+ *
+ * The arguments (in jmh.args) are the maximum numbers of deletes to compare
+ * (default 1 2 3). The prefix length is set with the system property
+ * brillmoore.prefix.
+ */
+public class SymmetricDeleteReport {
+	private static final int K = 10;
+	private static final int DICT_SIZE = 171107;
+
+	public static void main(String[] args) throws IOException, ParseException {
+		int prefixLength = Integer.getInteger("brillmoore.prefix", SymmetricDeleteIndex.DEFAULT_PREFIX_LENGTH);
+		int[] distances = args.length > 0 ? new int[args.length] : new int[] { 1, 2, 3 };
+		for (int i = 0; i < args.length; i++) {
+			distances[i] = Integer.parseInt(args[i]);
+		}
+
+		SpellChecker spellchecker = new SpellChecker(BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE),
+				BenchmarkData.readDict(DICT_SIZE), 3, 0.8);
+		List<Misspelling> queries = BenchmarkData.readMisspellings(BenchmarkData.TEST_FILE);
+		int n = queries.size();
+
+		// full search
+		@SuppressWarnings("unchecked")
+		List<Candidate>[] full = new List[n];
+		long fullNanos = 0;
+		int fullCorrect = 0;
+		for (int i = 0; i < n; i++) {
+			long start = System.nanoTime();
+			full[i] = spellchecker.getRankedCandidates(queries.get(i).getSource(), K);
+			fullNanos += System.nanoTime() - start;
+			if (!full[i].isEmpty() && full[i].get(0).getTarget().equals(queries.get(i).getTarget())) {
+				fullCorrect++;
+			}
+		}
+
+		System.out.printf(Locale.US, "%d misspellings, %d words, prefix length %d%n%n", n, DICT_SIZE, prefixLength);
+		System.out.printf(Locale.US, "%-8s %9s %10s %10s %11s %10s %9s %9s %9s %11s%n", "deletes", "build ms",
+				"entries", "candidates", "gen recall", "recall@1", "recall@10", "top1 acc", "ms/query", "speedup");
+		System.out.printf(Locale.US, "%-8s %9s %10s %10d %11s %10s %9s %9.3f %9.2f %11s%n", "full", "-", "-",
+				DICT_SIZE, "-", "-", "-", (double) fullCorrect / n, fullNanos / 1e6 / n, "1.0");
+
+		for (int distance : distances) {
+			long buildStart = System.nanoTime();
+			SymmetricDeleteIndex deletes = new SymmetricDeleteIndex(spellchecker.getDictionaryIndex(), distance,
+					prefixLength);
+			long buildNanos = System.nanoTime() - buildStart;
+			spellchecker.setCandidateIndex(deletes);
+
+			long numCandidates = 0;
+			int generated = 0;
+			int top1 = 0;
+			int top10 = 0;
+			int top10Total = 0;
+			int correct = 0;
+			long nanos = 0;
+			for (int i = 0; i < n; i++) {
+				Misspelling m = queries.get(i);
+				Set<String> candidates = new HashSet<>();
+				for (int node : deletes.getCandidates(m.getSource())) {
+					candidates.add(deletes.getDictionaryIndex().getWord(node));
+				}
+				numCandidates += candidates.size();
+				if (candidates.contains(m.getTarget())) {
+					generated++;
+				}
+
+				long start = System.nanoTime();
+				List<Candidate> restricted = spellchecker.getRankedCandidates(m.getSource(), K);
+				nanos += System.nanoTime() - start;
+
+				Set<String> restrictedTargets = new HashSet<>();
+				for (Candidate c : restricted) {
+					restrictedTargets.add(c.getTarget());
+				}
+				if (!full[i].isEmpty() && !restricted.isEmpty()
+						&& restricted.get(0).getTarget().equals(full[i].get(0).getTarget())) {
+					top1++;
+				}
+				for (Candidate c : full[i]) {
+					if (restrictedTargets.contains(c.getTarget())) {
+						top10++;
+					}
+				}
+				top10Total += full[i].size();
+				if (!restricted.isEmpty() && restricted.get(0).getTarget().equals(m.getTarget())) {
+					correct++;
+				}
+			}
+
+			System.out.printf(Locale.US, "%-8d %9.0f %10d %10.1f %11.3f %10.3f %9.3f %9.3f %9.2f %11.1f%n",
+					distance, buildNanos / 1e6, deletes.size(), (double) numCandidates / n, (double) generated / n,
+					(double) top1 / n, (double) top10 / top10Total, (double) correct / n, nanos / 1e6 / n,
+					(double) fullNanos / nanos);
+		}
+	}
+}
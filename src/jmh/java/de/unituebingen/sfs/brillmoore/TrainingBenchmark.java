@@ -0,0 +1,35 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Training a spell checker on the Aspell training set. The dictionary is
+ * empty, so each operation measures aligning and counting the training
+ * pairs and compiling the error model.
+ */
+@State(Scope.Benchmark)
+public class TrainingBenchmark {
+	@Param({ "0", "3" })
+	public int window;
+
+	private List<Misspelling> train;
+
+	@Setup
+	public void setup() throws IOException {
+		train = BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE);
+	}
+
+	@Benchmark
+	public SpellChecker train() throws ParseException {
+		return new SpellChecker(train, new HashMap<>(), window, 0.8);
+	}
+}
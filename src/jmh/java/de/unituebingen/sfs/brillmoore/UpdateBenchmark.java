@@ -0,0 +1,46 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Adding one misspelling at a time to a spell checker trained on Aspell
+ * data of different sizes (see SpellChecker.addMisspellings()). The
+ * dictionary is empty, so each operation measures aligning the pair and
+ * updating the error model and the compiled error model, which only adds
+ * the paths to the changed rules. The misspellings cycle through the
+ * training data.
+ */
+@State(Scope.Thread)
+public class UpdateBenchmark {
+	@Param({ "aspell-common.dev", "aspell-common.all" })
+	public String trainFile;
+
+	@Param({ "0", "3" })
+	public int window;
+
+	private List<Misspelling> train;
+	private SpellChecker spellchecker;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException, ParseException {
+		train = BenchmarkData.readMisspellings(trainFile);
+		spellchecker = new SpellChecker(train, new HashMap<>(), window, 0.8);
+	}
+
+	@Benchmark
+	public void addMisspelling() throws ParseException {
+		spellchecker.addMisspellings(Collections.singletonList(train.get(next)));
+		next = (next + 1) % train.size();
+	}
+}
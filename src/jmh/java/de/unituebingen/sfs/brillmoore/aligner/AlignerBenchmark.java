@@ -0,0 +1,96 @@
+package de.unituebingen.sfs.brillmoore.aligner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.unituebingen.sfs.brillmoore.BenchmarkData;
+import de.unituebingen.sfs.brillmoore.Misspelling;
+
+/**
+ * Aligning training pairs from the Aspell training set and expanding their
+ * alignments, as in training. Each operation handles one pair, cycling
+ * through the pairs with a misspelling length from misspellingLength to
+ * misspellingLength + 2.
+ */
+@State(Scope.Thread)
+public class AlignerBenchmark {
+	@Param({ "0", "3" })
+	public int window;
+
+	@Param({ "5", "8", "11" })
+	public int misspellingLength;
+
+	private String[] sources;
+	private String[] targets;
+	private List<List<Alignment>> alignments;
+	private AlignmentPath[] paths;
+	private LevenshteinAligner la;
+	private AlignmentPath path;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		List<Misspelling> train = BenchmarkData.readMisspellings(BenchmarkData.TRAIN_FILE, misspellingLength,
+				misspellingLength + 2);
+
+		la = new LevenshteinAligner(1, 1, 1);
+		path = new AlignmentPath();
+		sources = new String[train.size()];
+		targets = new String[train.size()];
+		alignments = new ArrayList<>();
+		paths = new AlignmentPath[train.size()];
+
+		// align in the same direction as in training, from the target to the source
+		for (int i = 0; i < train.size(); i++) {
+			sources[i] = train.get(i).getTarget();
+			targets[i] = train.get(i).getSource();
+			alignments.add(la.getAlignments(sources[i], targets[i]));
+			paths[i] = new AlignmentPath();
+			la.align(sources[i], targets[i], paths[i]);
+		}
+	}
+
+	private int nextPair() {
+		int i = next;
+		next = (next + 1) % sources.length;
+
+		return i;
+	}
+
+	@Benchmark
+	public List<Alignment> getAlignments() {
+		int i = nextPair();
+
+		return la.getAlignments(sources[i], targets[i]);
+	}
+
+	@Benchmark
+	public int align() {
+		int i = nextPair();
+		la.align(sources[i], targets[i], path);
+
+		return path.size();
+	}
+
+	@Benchmark
+	public List<Alignment> extendAlignments() {
+		return AlignmentUtils.extendAlignments(alignments.get(nextPair()), window);
+	}
+
+	@Benchmark
+	public void extendAlignmentsFromPath(final Blackhole bh) {
+		AlignmentUtils.extendAlignments(paths[nextPair()], window,
+				(lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd, count) -> {
+					bh.consume(lhsEnd - lhsStart);
+					bh.consume(rhsEnd - rhsStart);
+				});
+	}
+}
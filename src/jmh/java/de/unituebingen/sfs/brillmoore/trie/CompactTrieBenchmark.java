@@ -0,0 +1,94 @@
+package de.unituebingen.sfs.brillmoore.trie;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.unituebingen.sfs.brillmoore.BenchmarkData;
+import de.unituebingen.sfs.brillmoore.aligner.AlignmentUtils;
+
+/**
+ * Building, looking up keys in and traversing a trie of padded words from a
+ * sample of the Aspell word list, encoded the same way as in
+ * DictionaryIndex. The trie is immutable, so it is built from all sorted
+ * keys at once instead of putting keys one by one.
+ */
+@State(Scope.Thread)
+public class CompactTrieBenchmark {
+	@Param({ "10000", "50000", "171107" })
+	public int dictSize;
+
+	private SortedMap<int[], Double> entries;
+	private int[][] keys;
+	private CompactTrie trie;
+	private int[] stack;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		Map<String, Double> dict = BenchmarkData.readDict(dictSize);
+
+		List<String> strings = new ArrayList<>(dict.keySet());
+		strings.add(AlignmentUtils.getReservedChars());
+		Alphabet alphabet = new Alphabet(strings);
+
+		entries = new TreeMap<>(CompactTrie.KEY_ORDER);
+		for (Map.Entry<String, Double> w : dict.entrySet()) {
+			entries.put(alphabet.encode(AlignmentUtils.padWord(w.getKey())), w.getValue());
+		}
+
+		// look up the keys in hash order rather than in trie order
+		keys = new int[dict.size()][];
+		int i = 0;
+		for (String w : dict.keySet()) {
+			keys[i++] = alphabet.encode(AlignmentUtils.padWord(w));
+		}
+
+		trie = new CompactTrie(entries);
+
+		// the pending subtrees are disjoint and each contains a key
+		stack = new int[keys.length + 1];
+	}
+
+	@Benchmark
+	public CompactTrie build() {
+		return new CompactTrie(entries);
+	}
+
+	@Benchmark
+	public double get() {
+		int[] key = keys[next];
+		next = (next + 1) % keys.length;
+
+		return trie.getValue(trie.getNode(key));
+	}
+
+	@Benchmark
+	public double traverse() {
+		// depth-first traversal through the child and sibling links
+		double sum = 0;
+		int top = 0;
+		stack[top++] = CompactTrie.ROOT;
+
+		while (top > 0) {
+			int node = stack[--top];
+			if (trie.isTerminal(node)) {
+				sum += trie.getValue(node);
+			}
+			for (int child = trie.getFirstChild(node); child != CompactTrie.NONE; child = trie.getNextSibling(child)) {
+				stack[top++] = child;
+			}
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,61 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable dictionary of words and their probabilities. The words are
+ * copied, checked for reserved characters and compiled into a
+ * DictionaryIndex once when the dictionary is created, so queries with a
+ * Dictionary (see SpellChecker.getRankedCandidates(String, Dictionary, int))
+ * do not check or compile anything and a Dictionary can be shared by any
+ * number of spell checkers and (concurrent) queries.
+ */
+public final class Dictionary {
+	private final Map<String, Double> words;
+	private final DictionaryIndex index;
+
+	/**
+	 * @param words words and their probabilities, which are copied
+	 * @throws ParseException if the words contain reserved characters
+	 */
+	public Dictionary(Map<String, Double> words) throws ParseException {
+		this.words = Collections.unmodifiableMap(new HashMap<>(words));
+		this.index = new DictionaryIndex(this.words);
+	}
+
+	/**
+	 * @return unmodifiable map of the words and their probabilities
+	 */
+	public Map<String, Double> getWords() {
+		return words;
+	}
+
+	/**
+	 * @return the compiled index of the words
+	 */
+	public DictionaryIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return number of words
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	public boolean contains(String word) {
+		return words.containsKey(word);
+	}
+
+	/**
+	 * @param word
+	 * @return probability of the word or null if it is not in the dictionary
+	 */
+	public Double getProb(String word) {
+		return words.get(word);
+	}
+}
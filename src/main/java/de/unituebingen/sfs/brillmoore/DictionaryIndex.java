@@ -0,0 +1,231 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.unituebingen.sfs.brillmoore.aligner.AlignmentUtils;
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+import de.unituebingen.sfs.brillmoore.trie.Alphabet;
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
+
+/**
+ * A dictionary compiled into a trie of padded words. The index is built once
+ * and is only read while searching for candidates, so a single index can be
+ * shared by any number of (concurrent) queries.
+ *
+ * An index can be saved to a binary index file, which is memory-mapped when
+ * it is loaded, so that large dictionaries are loaded without parsing and
+ * parts of the trie that are never visited are never read from disk.
+ */
+public class DictionaryIndex {
+	// "BMDI" and the version of the index file format, which has to be
+	// increased for any change to the format
+	private static final int INDEX_FILE_MAGIC = 0x49444d42;
+	private static final int INDEX_FILE_VERSION = 1;
+
+	private final int paddingLength = 2;
+	private final Map<String, Double> dict;
+	private final Alphabet alphabet;
+	private final CompactTrie dictTrie;
+	private final DoubleBuffer priors;
+	private final IntBuffer wordIds;
+	private final int numWords;
+	private final int maxDepth;
+
+	/**
+	 * Build the index for a dictionary mapping words to probabilities. The
+	 * prior -log(prob) of each word is stored for its final trie node and
+	 * each other node stores the lowest prior of any word below it, which
+	 * bounds the prior of all candidates in its subtree.
+	 *
+	 * @param dict dictionary
+	 * @throws ParseException if the dictionary contains reserved characters
+	 */
+	public DictionaryIndex(Map<String, Double> dict) throws ParseException {
+		this.dict = dict;
+
+		// check for reserved characters in dictionary
+		String reservedChars = AlignmentUtils.getReservedChars();
+		for (String dictKey : dict.keySet()) {
+			if (AlignmentUtils.containsReservedChars(dictKey)) {
+				throw new ParseException("The dictionary contains the reserved characters: " +
+						reservedChars + "\n" +
+						"Please edit the data or modify AlignmentUtils to choose unused characters.", 0);
+			}
+		}
+
+		// the words are encoded with their own alphabet, so the index does
+		// not depend on the error model
+		List<String> strings = new ArrayList<>(dict.keySet());
+		strings.add(reservedChars);
+		alphabet = new Alphabet(strings);
+
+		int depth = 0;
+		SortedMap<int[], Double> paddedDict = new TreeMap<>(CompactTrie.KEY_ORDER);
+		for (Map.Entry<String, Double> w : dict.entrySet()) {
+			int[] paddedWord = alphabet.encode(AlignmentUtils.padWord(w.getKey()));
+			paddedDict.put(paddedWord, w.getValue());
+			depth = Math.max(depth, paddedWord.length);
+		}
+		maxDepth = depth;
+
+		dictTrie = new CompactTrie(paddedDict);
+
+		// nodes are in depth-first order, so going backwards each child is
+		// visited before its parent
+		double[] nodePriors = new double[dictTrie.size()];
+		for (int node = dictTrie.size() - 1; node >= 0; node--) {
+			// padded words never end at a node with children
+			if (dictTrie.isTerminal(node)) {
+				nodePriors[node] = -Math.log(dictTrie.getValue(node));
+			} else {
+				nodePriors[node] = Double.POSITIVE_INFINITY;
+				for (int child = dictTrie.getFirstChild(node); child != CompactTrie.NONE;
+						child = dictTrie.getNextSibling(child)) {
+					nodePriors[node] = Math.min(nodePriors[node], nodePriors[child]);
+				}
+			}
+		}
+		priors = DoubleBuffer.wrap(nodePriors);
+
+		// number the words in trie order
+		int[] nodeWordIds = new int[dictTrie.size()];
+		int id = 0;
+		for (int node = 0; node < dictTrie.size(); node++) {
+			nodeWordIds[node] = dictTrie.isTerminal(node) ? id++ : -1;
+		}
+		wordIds = IntBuffer.wrap(nodeWordIds);
+		numWords = id;
+	}
+
+	/**
+	 * Load an index from an index file written by save(). The file is
+	 * memory-mapped and the trie, priors and word ids are used in place
+	 * without copying them onto the heap.
+	 *
+	 * @param indexFile index file
+	 * @throws IOException if the index file cannot be read
+	 * @throws ParseException if the file is not a valid index file
+	 */
+	public DictionaryIndex(File indexFile) throws IOException, ParseException {
+		BinaryReader in = new BinaryReader(indexFile);
+
+		if (in.readInt() != INDEX_FILE_MAGIC || in.readInt() != INDEX_FILE_VERSION) {
+			throw new ParseException("The file " + indexFile + " is not a dictionary index file for this version of the spell checker.", 0);
+		}
+
+		// the padding in the index has to match the current reserved characters
+		int[] indexReservedChars = in.readIntArray(in.readInt());
+		if (!Arrays.equals(indexReservedChars, AlignmentUtils.getReservedChars().codePoints().toArray())) {
+			throw new ParseException("The dictionary index file " + indexFile + " was built with different reserved characters: " +
+					new String(indexReservedChars, 0, indexReservedChars.length), 0);
+		}
+
+		dict = null;
+		maxDepth = in.readInt();
+		numWords = in.readInt();
+		alphabet = Alphabet.read(in);
+		dictTrie = CompactTrie.read(in);
+
+		in.align(8);
+		priors = in.readDoubles(dictTrie.size());
+		wordIds = in.readInts(dictTrie.size());
+	}
+
+	/**
+	 * Save the index to a binary index file that can be loaded with
+	 * DictionaryIndex(File).
+	 *
+	 * @param indexFile index file
+	 * @throws IOException if the index file cannot be written
+	 */
+	public void save(File indexFile) throws IOException {
+		try (BinaryWriter out = new BinaryWriter(indexFile)) {
+			out.writeInt(INDEX_FILE_MAGIC);
+			out.writeInt(INDEX_FILE_VERSION);
+
+			int[] codePoints = AlignmentUtils.getReservedChars().codePoints().toArray();
+			out.writeInt(codePoints.length);
+			out.writeInts(codePoints);
+
+			out.writeInt(maxDepth);
+			out.writeInt(numWords);
+			alphabet.write(out);
+			dictTrie.write(out);
+
+			out.align(8);
+			out.writeDoubles(priors);
+			out.writeInts(wordIds);
+		}
+	}
+
+	/**
+	 * @return the dictionary this index was built from or null for an index
+	 * loaded from an index file
+	 */
+	public Map<String, Double> getDictionary() {
+		return dict;
+	}
+
+	/**
+	 * @return the alphabet used to encode the dictionary
+	 */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	public CompactTrie getTrie() {
+		return dictTrie;
+	}
+
+	/**
+	 * @param node dictionary trie node
+	 * @return -log(prob) of the word ending at the node or the lowest
+	 * -log(prob) of any word below the node
+	 */
+	public double getPrior(int node) {
+		return priors.get(node);
+	}
+
+	/**
+	 * @param node dictionary trie node
+	 * @return id of the word ending at the node (words are numbered from 0 in
+	 * trie order) or -1 if no word ends at the node
+	 */
+	public int getWordId(int node) {
+		return wordIds.get(node);
+	}
+
+	/**
+	 * @return number of words
+	 */
+	public int getNumWords() {
+		return numWords;
+	}
+
+	/**
+	 * @param node dictionary trie node where a word ends
+	 * @return the word without padding
+	 */
+	public String getWord(int node) {
+		int[] key = dictTrie.getKey(node);
+		return alphabet.decode(key, paddingLength, key.length - paddingLength);
+	}
+
+	/**
+	 * @return length of the longest padded word in the trie (in symbols)
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+}
@@ -1,19 +1,31 @@
 package de.unituebingen.sfs.brillmoore;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -21,6 +33,8 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.lang3.StringUtils;
 
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics;
+
 public class Main 
 {
 	private static Options options;
@@ -29,12 +43,21 @@ public class Main
 		String trainFile = null;
 		String dictFile = null;
 		String testFile = null;
+		String modelFile = null;
+		String saveModelFile = null;
+		String indexFile = null;
+		String saveIndexFile = null;
 		int window = 3;
 		double minAtoA = 0.8;
 		int numCand = 10;
 		boolean lowercase = false;
 		boolean capitalized = false;
 		boolean single = false;
+		int threads = 1;
+		Integer port = null;
+		int cacheSize = 0;
+		Integer deletes = null;
+		int beamWidth = 0;
 
 		// create the command line parser
 		CommandLineParser parser = new BasicParser();
@@ -44,7 +67,7 @@ public class Main
 
 		options.addOption("p", "train", true, "training file");
 		options.addOption("d", "dict", true, "dictionary file");
-		options.addOption("t", "test", true, "testing file");
+		options.addOption("t", "test", true, "testing file (- for standard input)");
 		options.addOption("w", "window", true, "window for expanding alignments (Brill and Moore's N; default 3)");
 		options.addOption("a", "minatoa", true, "minimum a -> a probability (default 0.8)");
 		options.addOption("c", "candidates", true, "number of candidates to output (default 10)");
@@ -52,6 +75,15 @@ public class Main
 		options.addOption("l", "lowercase", false, "expand dictionary with lowercase versions of all words");
 		options.addOption("u", "capitalized", false, "expand dictionary with capitalized versions of all words");
 		options.addOption("s", "single", false, "add training instances for all single character edits");
+		options.addOption("j", "threads", true, "number of threads for training and for scoring the testing file or server requests (default 1)");
+		options.addOption("m", "model", true, "load a model file saved with -o instead of training (-p)");
+		options.addOption("o", "save-model", true, "save the trained model to a model file (without -t: train only)");
+		options.addOption("i", "index", true, "load a dictionary index file saved with -x instead of the dictionary (-d)");
+		options.addOption("x", "save-index", true, "save the compiled dictionary to a dictionary index file (without -t: compile only)");
+		options.addOption("e", "cache", true, "cache the candidates for this many recent misspellings (default 0: no cache)");
+		options.addOption("b", "beam", true, "only keep this many nodes at each depth of the dictionary trie (approximate; default 0: exact search)");
+		options.addOption("g", "deletes", true, "only score the words that share a delete of at most this many characters with the misspelling (default: score all words)");
+		options.addOption("r", "serve", true, "answer requests on a local HTTP server at this port instead of reading a testing file (-t)");
 
 		try {
 			// parse the command line arguments
@@ -64,6 +96,10 @@ public class Main
 			trainFile = line.getOptionValue('p');
 			dictFile = line.getOptionValue('d');
 			testFile = line.getOptionValue('t');
+			modelFile = line.getOptionValue('m');
+			saveModelFile = line.getOptionValue('o');
+			indexFile = line.getOptionValue('i');
+			saveIndexFile = line.getOptionValue('x');
 			lowercase = line.hasOption('l');
 			capitalized = line.hasOption('u');
 			
@@ -93,22 +129,93 @@ public class Main
 					printHelp();
 				}
 			}
+			
+			if (line.hasOption('j')) {
+				try {
+					threads = Integer.parseInt(line.getOptionValue('j'));
+				} catch (NumberFormatException e) {
+					System.out.println("The threads (-j) option was not formatted as an integer.");
+					printHelp();
+				}
+			}
+			
+			if (line.hasOption('e')) {
+				try {
+					cacheSize = Integer.parseInt(line.getOptionValue('e'));
+				} catch (NumberFormatException e) {
+					System.out.println("The cache (-e) option was not formatted as an integer.");
+					printHelp();
+				}
+			}
+			
+			if (line.hasOption('b')) {
+				try {
+					beamWidth = Integer.parseInt(line.getOptionValue('b'));
+				} catch (NumberFormatException e) {
+					System.out.println("The beam (-b) option was not formatted as an integer.");
+					printHelp();
+				}
+			}
+			
+			if (line.hasOption('g')) {
+				try {
+					deletes = Integer.parseInt(line.getOptionValue('g'));
+				} catch (NumberFormatException e) {
+					System.out.println("The deletes (-g) option was not formatted as an integer.");
+					printHelp();
+				}
+			}
+			
+			if (line.hasOption('r')) {
+				try {
+					port = Integer.parseInt(line.getOptionValue('r'));
+				} catch (NumberFormatException e) {
+					System.out.println("The port (-r) option was not formatted as an integer.");
+					printHelp();
+				}
+			}
 		} catch (org.apache.commons.cli.ParseException e) {
 			System.out.println(e.getMessage());
 			printHelp();
 		}
 		
-		// check that file parameters are given
-		if (trainFile == null) {
-			System.out.println("Please specify a training file (-p).");
+		// check that file parameters are given: without a testing file or a
+		// server port, the model and/or dictionary index are only saved
+		boolean serve = port != null;
+		boolean saveOnly = testFile == null && !serve && (saveModelFile != null || saveIndexFile != null);
+		boolean needModel = testFile != null || serve || saveModelFile != null;
+		boolean needDict = testFile != null || serve || saveIndexFile != null;
+		
+		if (testFile == null && !serve && !saveOnly) {
+			System.out.println("Please specify a testing file (-t) or a server port (-r).");
+			printHelp();
+		}
+		if (testFile != null && serve) {
+			System.out.println("Please specify either a testing file (-t) or a server port (-r), not both.");
+			printHelp();
+		}
+		if (needModel && trainFile == null && modelFile == null) {
+			System.out.println("Please specify a training file (-p) or a model file (-m).");
+			printHelp();
+		}
+		if (trainFile != null && modelFile != null) {
+			System.out.println("Please specify either a training file (-p) or a model file (-m), not both.");
+			printHelp();
+		}
+		if (saveModelFile != null && trainFile == null) {
+			System.out.println("Please specify a training file (-p) for the model to save (-o).");
+			printHelp();
+		}
+		if (needDict && dictFile == null && indexFile == null) {
+			System.out.println("Please specify a dictionary file (-d) or a dictionary index file (-i).");
 			printHelp();
 		}
-		if (dictFile == null) {
-			System.out.println("Please specify a dictionary file (-d).");
+		if (dictFile != null && indexFile != null) {
+			System.out.println("Please specify either a dictionary file (-d) or a dictionary index file (-i), not both.");
 			printHelp();
 		}
-		if (testFile == null) {
-			System.out.println("Please specify a testing file (-t).");
+		if (saveIndexFile != null && dictFile == null) {
+			System.out.println("Please specify a dictionary file (-d) for the dictionary index to save (-x).");
 			printHelp();
 		}
 
@@ -127,14 +234,39 @@ public class Main
 			System.out.println("The number of candidates (-c) to output must be greater than 0.");
 			printHelp();
 		}
+		
+		if (threads <= 0) {
+			System.out.println("The number of threads (-j) must be greater than 0.");
+			printHelp();
+		}
+		
+		if (cacheSize < 0) {
+			System.out.println("The cache size (-e) must be 0 or greater.");
+			printHelp();
+		}
+		
+		if (beamWidth < 0) {
+			System.out.println("The beam width (-b) must be 0 or greater.");
+			printHelp();
+		}
+		
+		if (deletes != null && deletes < 0) {
+			System.out.println("The number of deletes (-g) must be 0 or greater.");
+			printHelp();
+		}
+		
+		if (serve && (port < 0 || port > 65535)) {
+			System.out.println("The port (-r) must be between 0 and 65535.");
+			printHelp();
+		}
 
 		// read in files
-		List<Misspelling> trainMisspellings = readMisspellings(trainFile);
-		Map<String, Double> dict = readDict(dictFile, lowercase, capitalized);
-		List<Misspelling> testMisspellings = readMisspellings(testFile);
+		List<Misspelling> trainMisspellings = trainFile != null ? readMisspellings(trainFile) : null;
+		Map<String, Double> dict = dictFile != null ? readDict(dictFile, lowercase, capitalized) : new HashMap<>();
+		BufferedReader testInput = testFile != null ? openTestFile(testFile) : null;
 		
 		// add training instances for all single character edits
-		if (single) {
+		if (single && trainMisspellings != null) {
 			// find all strings in input data
 			List<String> allInput = new ArrayList<>(dict.keySet());         
 			allInput.addAll(trainMisspellings.stream()
@@ -161,30 +293,104 @@ public class Main
 			}
 		}
 
-		// train spell checker
-		SpellChecker spellchecker;
+		// train spell checker or load a saved model
+		SpellChecker spellchecker = null;
+		ForkJoinPool pool = new ForkJoinPool(threads);
 		try {
-			spellchecker = new SpellChecker(trainMisspellings, dict, window, minAtoA);
-
-			// call spell checker for each misspelling in test file
-			for (Misspelling t : testMisspellings) {
-				List<String> outList = new ArrayList<>();
-				outList.add(t.getSource());
-				outList.add(t.getTarget());
-				outList.add(Integer.toString(t.getCount()));
-
-				List<Candidate> candidates = spellchecker.getRankedCandidates(t.getSource());
-
-				for (Candidate cand : candidates.subList(0, Math.min(candidates.size(), numCand))) {
-					outList.add(cand.getTarget());
-					outList.add(String.format(Locale.US, "%.2f", cand.getProb()));
+			if (saveIndexFile != null) {
+				new DictionaryIndex(dict).save(new File(saveIndexFile));
+			}
+			
+			if (needModel) {
+				if (modelFile != null) {
+					spellchecker = new SpellChecker(new File(modelFile), dict);
+				} else {
+					spellchecker = new SpellChecker(trainMisspellings, dict, window, minAtoA, threads > 1 ? pool : null);
+				}
+			}
+			
+			if (saveModelFile != null) {
+				spellchecker.saveModel(new File(saveModelFile));
+			}
+			
+			if (saveOnly) {
+				return;
+			}
+			
+			if (indexFile != null) {
+				spellchecker.setDictionary(new DictionaryIndex(new File(indexFile)));
+			}
+			
+			spellchecker.setResultCache(cacheSize);
+			spellchecker.setBeamWidth(beamWidth);
+			
+			if (deletes != null) {
+				spellchecker.setCandidateIndex(new SymmetricDeleteIndex(spellchecker.getDictionaryIndex(), deletes, 
+						SymmetricDeleteIndex.DEFAULT_PREFIX_LENGTH));
+			}
+			
+			// answer requests until the process is stopped
+			if (serve) {
+				final SpellCheckerServer server;
+				try {
+					server = new SpellCheckerServer(spellchecker, numCand, port, Executors.newFixedThreadPool(threads));
+				} catch (IOException e) {
+					System.err.println("The server could not be started on port " + port + ": " + e.getMessage());
+					System.exit(-1);
+					return;
+				}
+				server.start();
+				
+				// query and training metrics for monitoring tools
+				try {
+					ManagementFactory.getPlatformMBeanServer().registerMBean(spellchecker.getMetrics(), 
+							new ObjectName(SpellCheckerMetrics.OBJECT_NAME));
+				} catch (JMException e) {
+					System.err.println("The metrics could not be registered with JMX: " + e.getMessage());
 				}
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+				System.err.println("Listening on http://localhost:" + server.getPort() + SpellCheckerServer.PATH);
+				return;
+			}
 
-				System.out.println(StringUtils.join(outList, "\t"));
+			// call spell checker for the misspellings in the test file as
+			// they are read, with a few lines per thread in flight
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)));
+			try {
+				new StreamScorer(spellchecker, numCand, pool, 4 * threads).score(testInput, out);
+			} catch (IOException e) {
+				System.err.println("The testing file could not be read or the output could not be written: " + e.getMessage());
 			}
 		} catch (ParseException e) {
 			System.err.println(e.getMessage());
+		} catch (IOException e) {
+			System.err.println("The model or dictionary index file could not be read or written: " + e.getMessage());
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted while scoring the testing file.");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Open the testing file for reading line by line.
+	 * 
+	 * @param file testing file or - for standard input
+	 * @return
+	 */
+	private static BufferedReader openTestFile(String file) {
+		if (file.equals("-")) {
+			return new BufferedReader(new InputStreamReader(System.in));
+		}
+		
+		try {
+			return new BufferedReader(new FileReader(file));
+		} catch (FileNotFoundException e) {
+			System.err.println("The file " + file + " could not be opened.");
+			System.exit(-1);
 		}
+		
+		return null;
 	}
 
 	/**
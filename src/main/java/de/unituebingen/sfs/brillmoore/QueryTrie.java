@@ -0,0 +1,157 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
+
+/**
+ * The prefixes of a batch of padded misspellings (as error model symbols)
+ * as a trie, whose nodes are the columns of the edit distance rows. The
+ * cell for a dictionary trie node and the prefix m[0..i) only depends on
+ * the first i symbols of the misspelling, so misspellings with a common
+ * prefix share the cells for it. The columns of a misspelling m are the
+ * prefixes m[0..i) for 0 <= i < m.length.
+ *
+ * Nodes are numbered in depth-first order, so each node comes after its
+ * parent, and the root (the empty prefix) is node 0. A single misspelling
+ * is a chain, in which node i is the prefix of length i.
+ */
+class QueryTrie {
+	public static final int ROOT = 0;
+
+	// parent of each node and symbol on the edge from the parent
+	private final int[] parents;
+	private final int[] symbols;
+	// length of the prefix of each node
+	private final int[] lengths;
+	// a misspelling that starts with the prefix of each node
+	private final int[][] words;
+	// node of the full prefix of each misspelling
+	private final int[] leaves;
+
+	/**
+	 * @param m a single misspelling
+	 */
+	public QueryTrie(int[] m) {
+		this(Collections.singletonList(m));
+	}
+
+	/**
+	 * @param misspellings misspellings, each with at least one symbol
+	 */
+	public QueryTrie(List<int[]> misspellings) {
+		int n = misspellings.size();
+
+		// sort the misspellings, so that each one shares the longest prefix
+		// with the one before it
+		Integer[] order = new Integer[n];
+		for (int q = 0; q < n; q++) {
+			order[q] = q;
+		}
+		Arrays.sort(order, (a, b) -> CompactTrie.KEY_ORDER.compare(misspellings.get(a), misspellings.get(b)));
+
+		int size = 1;
+		int[] prev = new int[0];
+		for (int q : order) {
+			int[] m = misspellings.get(q);
+			size += m.length - 1 - commonPrefixLength(prev, m);
+			prev = m;
+		}
+
+		parents = new int[size];
+		symbols = new int[size];
+		lengths = new int[size];
+		words = new int[size][];
+		leaves = new int[n];
+
+		parents[ROOT] = -1;
+		words[ROOT] = n > 0 ? misspellings.get(order[0]) : new int[0];
+
+		// path[i] is the node of the prefix of length i of the previous
+		// misspelling
+		int[] path = new int[size];
+		prev = new int[0];
+		int node = 0;
+
+		for (int q : order) {
+			int[] m = misspellings.get(q);
+			int length = m.length - 1;
+
+			for (int i = commonPrefixLength(prev, m); i < length; i++) {
+				node++;
+				parents[node] = path[i];
+				symbols[node] = m[i];
+				lengths[node] = i + 1;
+				words[node] = m;
+				path[i + 1] = node;
+			}
+
+			leaves[q] = path[length];
+			prev = m;
+		}
+	}
+
+	// common prefix of the columns of a and b
+	private static int commonPrefixLength(int[] a, int[] b) {
+		int n = Math.min(a.length, b.length) - 1;
+		int i = 0;
+
+		while (i < n && a[i] == b[i]) {
+			i++;
+		}
+
+		return Math.max(i, 0);
+	}
+
+	/**
+	 * @return number of nodes (columns)
+	 */
+	public int size() {
+		return parents.length;
+	}
+
+	/**
+	 * @return number of misspellings
+	 */
+	public int getNumQueries() {
+		return leaves.length;
+	}
+
+	/**
+	 * @return parent of each node (-1 for the root)
+	 */
+	int[] getParents() {
+		return parents;
+	}
+
+	/**
+	 * @return symbol on the edge from the parent of each node
+	 */
+	int[] getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return length of the prefix of each node
+	 */
+	int[] getLengths() {
+		return lengths;
+	}
+
+	/**
+	 * @return a misspelling that starts with the prefix of each node
+	 */
+	int[][] getWords() {
+		return words;
+	}
+
+	/**
+	 * @param q index of a misspelling
+	 * @return node of the last column of the misspelling
+	 */
+	public int getLeaf(int q) {
+		return leaves[q];
+	}
+}
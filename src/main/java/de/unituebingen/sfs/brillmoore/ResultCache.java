@@ -0,0 +1,186 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.unituebingen.sfs.brillmoore.errormodel.CompiledErrorModel;
+
+/**
+ * A bounded cache of ranked candidates for SpellChecker, which evicts the
+ * least recently used entries. The entries are keyed by misspelling, number
+ * of candidates, dictionary index, error model, candidate index and beam
+ * width, where the indexes and the model are compared by identity, so
+ * results from a previous model or dictionary are never returned, even for
+ * queries that were still running when the cache was cleared.
+ *
+ * The cache can be used by any number of threads. Lookups only hold the lock
+ * for the hash table access, not while candidates are ranked, so a
+ * misspelling that is requested concurrently before it is cached may be
+ * ranked more than once.
+ */
+public class ResultCache {
+	private final int maxSize;
+	private final LinkedHashMap<Key, List<Candidate>> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	static final class Key {
+		private final String misspelling;
+		private final int k;
+		private final DictionaryIndex index;
+		private final CompiledErrorModel model;
+		private final SymmetricDeleteIndex candidateIndex;
+		private final int beamWidth;
+		private final int hash;
+
+		Key(String misspelling, int k, DictionaryIndex index, CompiledErrorModel model,
+				SymmetricDeleteIndex candidateIndex, int beamWidth) {
+			this.misspelling = misspelling;
+			this.k = k;
+			this.index = index;
+			this.model = model;
+			this.candidateIndex = candidateIndex;
+			this.beamWidth = beamWidth;
+
+			int h = misspelling.hashCode() * 31 + k;
+			h = h * 31 + System.identityHashCode(index);
+			h = h * 31 + System.identityHashCode(model);
+			h = h * 31 + System.identityHashCode(candidateIndex);
+			hash = h * 31 + beamWidth;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) o;
+			return hash == other.hash && k == other.k && index == other.index && model == other.model
+					&& candidateIndex == other.candidateIndex && beamWidth == other.beamWidth
+					&& misspelling.equals(other.misspelling);
+		}
+	}
+
+	/**
+	 * @param maxSize maximum number of entries (at least 1)
+	 */
+	public ResultCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The cache size must be at least 1.");
+		}
+
+		this.maxSize = maxSize;
+
+		// access order, so that the eldest entry is the least recently used
+		entries = new LinkedHashMap<Key, List<Candidate>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, List<Candidate>> eldest) {
+				if (size() > ResultCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return copies of the cached candidates or null if there is no entry
+	 */
+	List<Candidate> get(Key key) {
+		List<Candidate> candidates;
+
+		synchronized (entries) {
+			candidates = entries.get(key);
+		}
+
+		if (candidates == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return copy(candidates);
+	}
+
+	void put(Key key, List<Candidate> candidates) {
+		List<Candidate> copied = copy(candidates);
+
+		synchronized (entries) {
+			entries.put(key, copied);
+		}
+	}
+
+	// candidates are mutable, so callers never share the cached candidates
+	private static List<Candidate> copy(List<Candidate> candidates) {
+		List<Candidate> copied = new ArrayList<>(candidates.size());
+
+		for (Candidate c : candidates) {
+			copied.add(new Candidate(c.getTarget(), c.getProb()));
+		}
+
+		return copied;
+	}
+
+	/**
+	 * Remove all entries. The counters are not reset.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return number of entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return number of lookups that found an entry
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that did not find an entry
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of entries removed because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResultCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHits() + ", misses=" +
+				getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+}
@@ -1,353 +1,1508 @@
 package de.unituebingen.sfs.brillmoore;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang3.StringUtils;
-
-import com.ryangantt.util.Trie;
-
-import de.unituebingen.sfs.brillmoore.aligner.Alignment;
+import de.unituebingen.sfs.brillmoore.aligner.AlignmentPath;
 import de.unituebingen.sfs.brillmoore.aligner.AlignmentUtils;
 import de.unituebingen.sfs.brillmoore.aligner.LevenshteinAligner;
+import de.unituebingen.sfs.brillmoore.errormodel.AlignmentCounts;
+import de.unituebingen.sfs.brillmoore.errormodel.CompiledErrorModel;
 import de.unituebingen.sfs.brillmoore.errormodel.ErrorModel;
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+import de.unituebingen.sfs.brillmoore.metrics.QueryStats;
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics;
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics.TrainingPhase;
+import de.unituebingen.sfs.brillmoore.trie.Alphabet;
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
 
 public class SpellChecker 
 {
-	private Trie<Trie<Double>> betaAlphaTrie;
-	private Map<String, Double> dict;
+	// "BMSM" and the version of the model file format, which has to be
+	// increased for any change to the format
+	private static final int MODEL_FILE_MAGIC = 0x4d534d42;
+	private static final int MODEL_FILE_VERSION = 4;
+
+	// the error model is replaced when misspellings are added, so each
+	// query reads it once and uses the same model throughout
+	private volatile CompiledErrorModel errorModel;
+	private ErrorModel trainedModel = null;
+	private volatile DictionaryIndex dictIndex;
 	private int window;
 	private double minAtoA;
+	private volatile boolean pruning = true;
+	private volatile ParallelSearch parallelSearch = null;
+	private volatile ResultCache resultCache = null;
+	private volatile SymmetricDeleteIndex candidateIndex = null;
+	private volatile int beamWidth = 0;
+	private final SpellCheckerMetrics metrics = new SpellCheckerMetrics();
 	private final int paddingLength = 2;
 	private String reservedChars = AlignmentUtils.getReservedChars();
-	private String regexReservedChars = ".*[" + reservedChars + "].*";
 	private String reservedCharsErrorMessage = "Please edit the data or modify AlignmentUtils to choose unused characters.";
 
 	public SpellChecker(List<Misspelling> misspellings, Map<String, Double> aDict, int window, double minAtoA) throws ParseException {
-		this.dict = aDict;
+		this(misspellings, aDict, window, minAtoA, null);
+	}
+
+	/**
+	 * Train a spell checker, aligning the misspellings in parallel on the
+	 * given executor (e.g., a ForkJoinPool). The trained model is the same
+	 * as for sequential training.
+	 * 
+	 * @param misspellings training data
+	 * @param aDict dictionary
+	 * @param window window for expanding alignments
+	 * @param minAtoA minimum a -> a probability
+	 * @param executor executor for training or null to train sequentially
+	 * @throws ParseException if the training data or dictionary contain reserved characters
+	 */
+	public SpellChecker(List<Misspelling> misspellings, Map<String, Double> aDict, int window, double minAtoA, 
+			ExecutorService executor) throws ParseException {
+		this.window = window;
+		this.minAtoA = minAtoA;
+		
+		// check for reserved characters in dictionary (while compiling the
+		// dictionary once for all queries) and misspellings
+		dictIndex = compileDictionary(aDict);
+		checkMisspellings(misspellings);
+		
+		trainSpellChecker(misspellings, executor);
+	}
+	
+	public SpellChecker(List<Misspelling> misspellings, Dictionary dictionary, int window, double minAtoA) throws ParseException {
+		this(misspellings, dictionary, window, minAtoA, null);
+	}
+	
+	/**
+	 * Train a spell checker with a dictionary that was already checked and
+	 * compiled (see SpellChecker(List, Map, int, double, ExecutorService)).
+	 * 
+	 * @param misspellings training data
+	 * @param dictionary dictionary
+	 * @param window window for expanding alignments
+	 * @param minAtoA minimum a -> a probability
+	 * @param executor executor for training or null to train sequentially
+	 * @throws ParseException if the training data contain reserved characters
+	 */
+	public SpellChecker(List<Misspelling> misspellings, Dictionary dictionary, int window, double minAtoA, 
+			ExecutorService executor) throws ParseException {
 		this.window = window;
 		this.minAtoA = minAtoA;
 		
-		// check for reserved characters in dictionary and misspellings
-		for (String dictKey : aDict.keySet()) {
-			if (dictKey.matches(regexReservedChars)) {
-				throw new ParseException("The dictionary contains the reserved characters: " + 
+		dictIndex = dictionary.getIndex();
+		checkMisspellings(misspellings);
+		
+		trainSpellChecker(misspellings, executor);
+	}
+	
+	private void checkMisspellings(List<Misspelling> misspellings) throws ParseException {
+		for (Misspelling m : misspellings) {
+			if (AlignmentUtils.containsReservedChars(m.getSource()) || 
+					AlignmentUtils.containsReservedChars(m.getTarget())) {
+				throw new ParseException("The training data contains the reserved characters: " + 
 						reservedChars + "\n" + reservedCharsErrorMessage, 0);
+		
 			}
 		}
+	}
+
+	/**
+	 * Load a spell checker from a model file written by saveModel() instead
+	 * of training it. The model file is memory-mapped and its tables are
+	 * copied onto the heap without parsing or compiling the model.
+	 * 
+	 * @param modelFile model file
+	 * @param aDict dictionary
+	 * @throws IOException if the model file cannot be read
+	 * @throws ParseException if the model file is not a valid model file or
+	 * the dictionary contains reserved characters
+	 */
+	public SpellChecker(File modelFile, Map<String, Double> aDict) throws IOException, ParseException {
+		loadModel(modelFile);
+		
+		dictIndex = compileDictionary(aDict);
+	}
+	
+	/**
+	 * Load a spell checker from a model file with a dictionary that was
+	 * already checked and compiled (see SpellChecker(File, Map)).
+	 * 
+	 * @param modelFile model file
+	 * @param dictionary dictionary
+	 * @throws IOException if the model file cannot be read
+	 * @throws ParseException if the model file is not a valid model file
+	 */
+	public SpellChecker(File modelFile, Dictionary dictionary) throws IOException, ParseException {
+		loadModel(modelFile);
+		
+		dictIndex = dictionary.getIndex();
+	}
+	
+	private void loadModel(File modelFile) throws IOException, ParseException {
+		BinaryReader in = new BinaryReader(modelFile);
+		
+		if (in.readInt() != MODEL_FILE_MAGIC || in.readInt() != MODEL_FILE_VERSION) {
+			throw new ParseException("The file " + modelFile + " is not a model file for this version of the spell checker.", 0);
+		}
+		
+		window = in.readInt();
+		minAtoA = in.readDouble();
+		
+		// the padding in the model has to match the current reserved characters
+		int[] modelReservedChars = in.readIntArray(in.readInt());
+		if (!Arrays.equals(modelReservedChars, reservedChars.codePoints().toArray())) {
+			throw new ParseException("The model file " + modelFile + " was trained with different reserved characters: " + 
+					new String(modelReservedChars, 0, modelReservedChars.length), 0);
+		}
+		
+		errorModel = CompiledErrorModel.read(in);
+	}
+
+	/**
+	 * Save the trained model (parameters and compiled error model)
+	 * to a binary model file that can be loaded with 
+	 * SpellChecker(File, Map). The dictionary is not saved.
+	 * 
+	 * @param modelFile model file
+	 * @throws IOException if the model file cannot be written
+	 */
+	public void saveModel(File modelFile) throws IOException {
+		try (BinaryWriter out = new BinaryWriter(modelFile)) {
+			out.writeInt(MODEL_FILE_MAGIC);
+			out.writeInt(MODEL_FILE_VERSION);
+			out.writeInt(window);
+			out.writeDouble(minAtoA);
+			
+			int[] codePoints = reservedChars.codePoints().toArray();
+			out.writeInt(codePoints.length);
+			out.writeInts(codePoints);
+			
+			errorModel.write(out);
+		}
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public double getMinAtoA() {
+		return minAtoA;
+	}
+
+	/**
+	 * Replace the spell checker's dictionary, compiling the new dictionary
+	 * into the index used by getRankedCandidates().
+	 * 
+	 * @param aDict dictionary
+	 * @throws ParseException if the dictionary contains reserved characters
+	 */
+	public void setDictionary(Map<String, Double> aDict) throws ParseException {
+		setDictionary(compileDictionary(aDict));
+	}
+
+	/**
+	 * Replace the spell checker's dictionary with a dictionary that was
+	 * already checked and compiled.
+	 * 
+	 * @param dictionary dictionary
+	 */
+	public void setDictionary(Dictionary dictionary) {
+		setDictionary(dictionary.getIndex());
+	}
+
+	/**
+	 * Replace the spell checker's dictionary with a compiled dictionary
+	 * index, e.g., an index loaded from an index file.
+	 * 
+	 * @param index dictionary index
+	 */
+	public void setDictionary(DictionaryIndex index) {
+		dictIndex = index;
+		clearResultCache();
+	}
+	
+	/**
+	 * @return the compiled index of the spell checker's dictionary
+	 */
+	public DictionaryIndex getDictionaryIndex() {
+		return dictIndex;
+	}
+	
+	/**
+	 * Only score the candidates found by a symmetric delete index instead of
+	 * all words in the dictionary. The candidates are scored in the same way
+	 * as in a search of the whole dictionary, so the result is the same as
+	 * for a full search except for the words that are not candidates. The
+	 * candidate index is only used for queries with the dictionary index it
+	 * was built for.
+	 * 
+	 * @param index candidate index or null to score all words
+	 */
+	public void setCandidateIndex(SymmetricDeleteIndex index) {
+		candidateIndex = index;
+		clearResultCache();
+	}
+	
+	public SymmetricDeleteIndex getCandidateIndex() {
+		return candidateIndex;
+	}
+	
+	/**
+	 * Search the dictionary trie level by level and only keep the beamWidth
+	 * most promising nodes at each depth, ranked by the lowest cost in their
+	 * edit distance row plus the best prior in their subtree. The number of
+	 * nodes visited per query is then bounded by the beam width, the
+	 * alphabet size and the length of the longest word, independent of the
+	 * size of the dictionary, but the k best candidates may be missed. The
+	 * candidates that are found are scored as in the exact search. The beam
+	 * search is always sequential (see setParallelSearch()).
+	 * 
+	 * @param beamWidth number of nodes to keep at each depth or 0 for an
+	 * exact search
+	 */
+	public void setBeamWidth(int beamWidth) {
+		if (beamWidth < 0) {
+			throw new IllegalArgumentException("The beam width must be 0 or greater.");
+		}
+		
+		this.beamWidth = beamWidth;
+		clearResultCache();
+	}
+	
+	public int getBeamWidth() {
+		return beamWidth;
+	}
+	
+	private void trainSpellChecker(List<Misspelling> misspellings, ExecutorService executor) {
+		AlignmentCounts alignmentCounts = countAlignments(misspellings, executor);
 		
+		// generate an error model from the alignment counts, with a default
+		// minimum probability for alpha -> alpha (m from Boyd (2008), p. 24)
+		long start = System.nanoTime();
+		trainedModel = new ErrorModel(alignmentCounts, minAtoA);
+		metrics.addTrainingTime(TrainingPhase.ERROR_MODEL, System.nanoTime() - start);
+
+		// compile the beta/alpha tries into state tables
+		start = System.nanoTime();
+		errorModel = new CompiledErrorModel(trainedModel);
+		metrics.addTrainingTime(TrainingPhase.RULE_TRIES, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Count the expanded alignments for the misspellings. Identical pairs are
+	 * only aligned once, with their counts added. With an executor, the pairs
+	 * are split into one part for each processor and each part is counted
+	 * separately before the counts are merged.
+	 * 
+	 * @param misspellings training data
+	 * @param executor executor for counting or null to count sequentially
+	 * @return alignment counts
+	 */
+	private AlignmentCounts countAlignments(List<Misspelling> misspellings, ExecutorService executor) {
+		Map<List<String>, Integer> pairCounts = new LinkedHashMap<>();
 		for (Misspelling m : misspellings) {
-			if (m.getSource().matches(regexReservedChars) || 
-					m.getTarget().matches(regexReservedChars)) {
-				throw new ParseException("The training data contains the reserved characters: " + 
-						reservedChars + "\n" + reservedCharsErrorMessage, 0);
+			List<String> pair = Arrays.asList(m.getSource(), m.getTarget());
+			Integer prevCount = pairCounts.get(pair);
+			
+			pairCounts.put(pair, prevCount == null ? m.getCount() : prevCount + m.getCount());
+		}
+		
+		List<Misspelling> pairs = new ArrayList<>();
+		for (Map.Entry<List<String>, Integer> p : pairCounts.entrySet()) {
+			pairs.add(new Misspelling(p.getKey().get(0), p.getKey().get(1), p.getValue()));
+		}
+		
+		if (executor == null) {
+			return countAlignments(pairs);
+		}
 		
+		int numParts = Runtime.getRuntime().availableProcessors();
+		int partSize = (pairs.size() + numParts - 1) / numParts;
+		List<Future<AlignmentCounts>> parts = new ArrayList<>();
+		for (int start = 0; start < pairs.size(); start += partSize) {
+			final List<Misspelling> part = pairs.subList(start, Math.min(start + partSize, pairs.size()));
+			parts.add(executor.submit(() -> countAlignments(part)));
+		}
+		
+		AlignmentCounts alignmentCounts = new AlignmentCounts();
+		try {
+			for (Future<AlignmentCounts> f : parts) {
+				alignmentCounts.addAll(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<AlignmentCounts> f : parts) {
+				f.cancel(true);
 			}
 		}
 		
-		trainSpellChecker(misspellings);
+		return alignmentCounts;
 	}
 	
-	private void trainSpellChecker(List<Misspelling> misspellings) throws ParseException {
-		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+	private AlignmentCounts countAlignments(List<Misspelling> misspellings) {
+		AlignmentCounts alignmentCounts = new AlignmentCounts();
 
 		LevenshteinAligner la = new LevenshteinAligner(1, 1, 1);
+		AlignmentPath path = new AlignmentPath();
+		long alignmentNanos = 0;
+		long expansionNanos = 0;
 		
 		for (Misspelling m : misspellings) {
 			String source = m.getSource();
 			String target = m.getTarget();
-			int count = m.getCount();
-			List<Alignment> alignments = la.getAlignments(target, source);
-			List<Alignment> expandedAlignments = AlignmentUtils.extendAlignments(alignments, window);
+			final int count = m.getCount();
+			long start = System.nanoTime();
+			la.align(target, source, path);
+			long aligned = System.nanoTime();
 			
-			for (Alignment a : expandedAlignments) {
-				Integer prevCount = alignmentCounts.get(a);
-
-				if (prevCount == null) {
-					prevCount = 0;
-				}
-				
-				alignmentCounts.put(a, prevCount + count);
-			}
+			// count the expanded alignments directly from the path
+			AlignmentUtils.extendAlignments(path, window, 
+					(lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd, ruleCount) -> 
+					alignmentCounts.add(lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd, ruleCount * count));
+			
+			alignmentNanos += aligned - start;
+			expansionNanos += System.nanoTime() - aligned;
 		}
+		
+		metrics.addTrainingTime(TrainingPhase.ALIGNMENT, alignmentNanos);
+		metrics.addTrainingTime(TrainingPhase.EXPANSION, expansionNanos);
+		
+		return alignmentCounts;
+	}
 
-		// generate an error model from the alignment counts, with a default
-		// minimum probability for alpha -> alpha (m from Boyd (2008), p. 24)
-		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+	/**
+	 * Add misspellings to the training data without training the model
+	 * again. Only the new misspellings are aligned and only the rules with
+	 * the same LHS as one of their alignments are recalculated, so the
+	 * resulting model ranks candidates the same way as a model trained on
+	 * all misspellings. The model is compiled again only if the new
+	 * misspellings contain new characters.
+	 * 
+	 * Queries that are running while the misspellings are added use the
+	 * previous model.
+	 * 
+	 * @param misspellings new misspellings
+	 * @throws ParseException if the misspellings contain reserved characters
+	 * @throws IllegalStateException if the spell checker was loaded from a
+	 * model file, which does not contain the alignment counts
+	 */
+	public void addMisspellings(List<Misspelling> misspellings) throws ParseException {
+		addMisspellings(misspellings, null);
+	}
 
-		// create beta/alpha trie
-		makeBetaAlphaTrie(e);
+	/**
+	 * Add misspellings to the training data, aligning them in parallel on
+	 * the given executor (see addMisspellings(List)).
+	 * 
+	 * @param misspellings new misspellings
+	 * @param executor executor for training or null to train sequentially
+	 * @throws ParseException if the misspellings contain reserved characters
+	 * @throws IllegalStateException if the spell checker was loaded from a
+	 * model file
+	 */
+	public synchronized void addMisspellings(List<Misspelling> misspellings, ExecutorService executor) throws ParseException {
+		if (trainedModel == null) {
+			throw new IllegalStateException("Misspellings cannot be added to a model loaded from a model file.");
+		}
+		
+		checkMisspellings(misspellings);
+		
+		AlignmentCounts alignmentCounts = countAlignments(misspellings, executor);
+		
+		long start = System.nanoTime();
+		int[] changed = trainedModel.addAlignmentCounts(alignmentCounts);
+		metrics.addTrainingTime(TrainingPhase.ERROR_MODEL, System.nanoTime() - start);
+		
+		start = System.nanoTime();
+		CompiledErrorModel updated = errorModel.update(trainedModel, changed);
+		if (updated == null) {
+			updated = new CompiledErrorModel(trainedModel);
+		}
+		metrics.addTrainingTime(TrainingPhase.RULE_TRIES, System.nanoTime() - start);
+		
+		errorModel = updated;
+		clearResultCache();
 	}
 	
 	public List<Candidate> getRankedCandidates(final String m, Map<String, Double> aDict) throws ParseException {
+		return getRankedCandidates(m, aDict, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Find the k best corrections for the misspelling m in a custom
+	 * dictionary. Unless it is the spell checker's own dictionary, the
+	 * dictionary is checked and compiled for each query, so use a Dictionary
+	 * to query the same custom dictionary more than once.
+	 * 
+	 * @param m misspelling
+	 * @param aDict dictionary
+	 * @param k number of candidates
+	 * @return the k best candidates, ranked
+	 * @throws ParseException if the misspelling or dictionary contain reserved characters
+	 */
+	public List<Candidate> getRankedCandidates(final String m, Map<String, Double> aDict, int k) throws ParseException {
+		// reuse the precompiled index for the spell checker's own dictionary,
+		// otherwise compile the custom dictionary for this query
+		DictionaryIndex index = dictIndex;
+		if (index.getDictionary() == aDict) {
+			return getRankedCandidates(m, index, k);
+		}
+
+		// the index is only used for this query, so it is not cached
+		return getRankedCandidates(m, compileDictionary(aDict), k, false);
+	}
+	
+	/**
+	 * Find the k best corrections for the misspelling m in a dictionary,
+	 * using the dictionary's index without checking or compiling it.
+	 * 
+	 * @param m misspelling
+	 * @param dictionary dictionary
+	 * @param k number of candidates
+	 * @return the k best candidates, ranked
+	 * @throws ParseException if the misspelling contains reserved characters
+	 */
+	public List<Candidate> getRankedCandidates(final String m, Dictionary dictionary, int k) throws ParseException {
+		return getRankedCandidates(m, dictionary.getIndex(), k);
+	}
+	
+	public List<Candidate> getRankedCandidates(final String m) throws ParseException {		
+		return getRankedCandidates(m, dictIndex);
+	}
+
+	/**
+	 * Find the k best corrections for the misspelling m in the spell
+	 * checker's dictionary.
+	 * 
+	 * @param m misspelling
+	 * @param k number of candidates
+	 * @return the k best candidates, ranked
+	 * @throws ParseException if the misspelling contains reserved characters
+	 */
+	public List<Candidate> getRankedCandidates(final String m, int k) throws ParseException {
+		return getRankedCandidates(m, dictIndex, k);
+	}
+
+	/**
+	 * Rank all words in a precompiled dictionary index as corrections for
+	 * the misspelling m.
+	 * 
+	 * @param m misspelling
+	 * @param index dictionary index from compileDictionary()
+	 * @return ranked candidates
+	 * @throws ParseException if the misspelling contains reserved characters
+	 */
+	public List<Candidate> getRankedCandidates(final String m, DictionaryIndex index) throws ParseException {
+		return getRankedCandidates(m, index, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Find the k best corrections for the misspelling m in a precompiled
+	 * dictionary index. With pruning enabled, subtrees of the dictionary trie
+	 * that cannot contain one of the k best candidates are skipped.
+	 * 
+	 * @param m misspelling
+	 * @param index dictionary index from compileDictionary()
+	 * @param k number of candidates
+	 * @return the k best candidates, ranked
+	 * @throws ParseException if the misspelling contains reserved characters
+	 */
+	public List<Candidate> getRankedCandidates(final String m, DictionaryIndex index, int k) throws ParseException {
+		return getRankedCandidates(m, index, k, true);
+	}
+	
+	private List<Candidate> getRankedCandidates(final String m, DictionaryIndex index, int k, boolean useCache) 
+			throws ParseException {
+		// the model is read once, so that the cached result matches its key
+		return getRankedCandidates(m, index, k, useCache, errorModel, candidateIndex, beamWidth);
+	}
+	
+	private List<Candidate> getRankedCandidates(final String m, DictionaryIndex index, int k, boolean useCache, 
+			CompiledErrorModel model, SymmetricDeleteIndex generator, int beam) throws ParseException {
 		// traverse the dictionary trie to calculate the edit distance between 
 		// a misspelling and all words in the dictionary
 		
 		// check for reserved characters in the misspelling
-		if (m.matches(regexReservedChars)) {
+		if (AlignmentUtils.containsReservedChars(m)) {
 			throw new ParseException("The misspelling / test data contains the reserved characters: " + 
 					reservedChars + "\n" + reservedCharsErrorMessage, 0);
 		}
 		
-		// check for reserved characters in custom dictionary
-		for (String dictKey : aDict.keySet()) {
-			if (dictKey.matches(regexReservedChars)) {
-				throw new ParseException("The dictionary contains the reserved characters: " + 
+		long start = System.nanoTime();
+		
+		if (generator != null && generator.getDictionaryIndex() != index) {
+			generator = null;
+		}
+		ParallelSearch parallel = parallelSearch;
+		ResultCache cache = useCache && k != Integer.MAX_VALUE ? resultCache : null;
+		ResultCache.Key key = null;
+		
+		if (cache != null) {
+			key = new ResultCache.Key(m, k, index, model, generator, beam);
+			List<Candidate> cached = cache.get(key);
+			if (cached != null) {
+				metrics.record(new QueryStats(m, k, true, 0, 0, 0, 0, cached.size(), System.nanoTime() - start));
+				return cached;
+			}
+		}
+	
+		Search s = new Search(model, index, AlignmentUtils.padWord(m), pruning);
+		if (generator != null) {
+			s.allowed = getSearchNodes(index.getTrie(), generator.getCandidates(m));
+		}
+		List<Candidate> candidates = beam > 0 ? beamEditDist(s, k, beam) : editDist(s, k, parallel);
+		
+		if (cache != null) {
+			cache.put(key, candidates);
+		}
+		
+		metrics.record(new QueryStats(m, k, false, s.nodesVisited, s.cellsComputed, s.ruleLookups, 
+				s.candidatesScored, candidates.size(), System.nanoTime() - start));
+		
+		return candidates;
+	}
+
+	/**
+	 * Mark the nodes of the candidate words and all their ancestors, which
+	 * are the nodes a search restricted to the candidates has to visit.
+	 */
+	private static BitSet getSearchNodes(CompactTrie dictTrie, int[] candidateNodes) {
+		BitSet nodes = new BitSet(dictTrie.size());
+		nodes.set(CompactTrie.ROOT);
+		
+		for (int node : candidateNodes) {
+			while (node != CompactTrie.NONE && !nodes.get(node)) {
+				nodes.set(node);
+				node = dictTrie.getParent(node);
+			}
+		}
+		
+		return nodes;
+	}
+
+	/**
+	 * Find the k best corrections for each misspelling in a batch in a
+	 * single traversal of the dictionary trie. The misspellings are put into
+	 * a query trie (see QueryTrie), so the cells for a prefix that several
+	 * misspellings share are only calculated once for each dictionary trie
+	 * node, which saves work in proportion to the overlap of the prefixes,
+	 * e.g., in a large sorted batch. The candidates are the same as when
+	 * each misspelling is scored on its own. A subtree of the dictionary
+	 * trie is only skipped if it cannot contain one of the k best
+	 * candidates for any misspelling in the batch.
+	 * 
+	 * The work and time of the traversal are recorded in equal parts for
+	 * each misspelling (see getMetrics()). With a beam width or a candidate
+	 * index, which restrict the search for each misspelling separately, the
+	 * misspellings are scored one by one.
+	 * 
+	 * @param misspellings misspellings
+	 * @param k number of candidates
+	 * @return the k best candidates for each misspelling, in input order
+	 * @throws ParseException if a misspelling contains reserved characters
+	 */
+	public List<List<Candidate>> getRankedCandidates(final List<String> misspellings, final int k) 
+			throws ParseException {
+		for (String m : misspellings) {
+			if (AlignmentUtils.containsReservedChars(m)) {
+				throw new ParseException("The misspelling / test data contains the reserved characters: " + 
 						reservedChars + "\n" + reservedCharsErrorMessage, 0);
 			}
 		}
+		
+		// the model, dictionary and search settings are read once for the
+		// whole batch
+		CompiledErrorModel model = errorModel;
+		DictionaryIndex index = dictIndex;
+		SymmetricDeleteIndex generator = candidateIndex;
+		int beam = beamWidth;
+		
+		int size = misspellings.size();
+		List<List<Candidate>> results = new ArrayList<>(Collections.nCopies(size, null));
+		if (beam > 0 || (generator != null && generator.getDictionaryIndex() == index)) {
+			for (int i = 0; i < size; i++) {
+				results.set(i, getRankedCandidates(misspellings.get(i), index, k, true, model, generator, beam));
+			}
+			return results;
+		}
+		
+		// look up the cached misspellings and collect the rest
+		ResultCache cache = k != Integer.MAX_VALUE ? resultCache : null;
+		List<Integer> queries = new ArrayList<>();
+		List<int[]> symbols = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			String m = misspellings.get(i);
+			
+			if (cache != null) {
+				long start = System.nanoTime();
+				List<Candidate> cached = cache.get(new ResultCache.Key(m, k, index, model, null, 0));
+				if (cached != null) {
+					results.set(i, cached);
+					metrics.record(new QueryStats(m, k, true, 0, 0, 0, 0, cached.size(), 
+							System.nanoTime() - start));
+					continue;
+				}
+			}
+			
+			queries.add(i);
+			symbols.add(model.getSymbols(AlignmentUtils.padWord(m)));
+		}
+		
+		if (queries.isEmpty()) {
+			return results;
+		}
+		
+		long start = System.nanoTime();
+		Search s = new Search(model, index, new QueryTrie(symbols), pruning);
+		s.initBatch();
+		TopCandidates[] candidates = new TopCandidates[queries.size()];
+		for (int q = 0; q < candidates.length; q++) {
+			candidates[q] = new TopCandidates(k);
+		}
+		batchEditDistCalc(s, 0, CompactTrie.ROOT, candidates);
+		long nanos = System.nanoTime() - start;
+		
+		int n = candidates.length;
+		for (int q = 0; q < n; q++) {
+			int i = queries.get(q);
+			String m = misspellings.get(i);
+			List<Candidate> result = candidates[q].getCandidates();
+			results.set(i, result);
+			
+			if (cache != null) {
+				cache.put(new ResultCache.Key(m, k, index, model, null, 0), result);
+			}
+			
+			metrics.record(new QueryStats(m, k, false, s.nodesVisited / n, s.cellsComputed / n, 
+					s.ruleLookups / n, s.candidatesScored / n, result.size(), nanos / n));
+		}
+		
+		return results;
+	}
+
+	/**
+	 * Find the k best corrections for each misspelling in a batch, scoring
+	 * the misspellings in parallel on the given executor (e.g., a
+	 * ForkJoinPool). The trained model and the dictionary index are shared
+	 * by all tasks and each task keeps its own edit distance rows.
+	 * 
+	 * @param misspellings misspellings
+	 * @param k number of candidates
+	 * @param executor executor for scoring
+	 * @return the k best candidates for each misspelling, in input order
+	 * @throws ParseException if a misspelling contains reserved characters
+	 * @throws InterruptedException if interrupted while waiting for results
+	 */
+	public List<List<Candidate>> getRankedCandidates(final List<String> misspellings, final int k, 
+			ExecutorService executor) throws ParseException, InterruptedException {
+		final DictionaryIndex index = dictIndex;
+		
+		List<Future<List<Candidate>>> futures = new ArrayList<>();
+		for (final String m : misspellings) {
+			futures.add(executor.submit(() -> getRankedCandidates(m, index, k)));
+		}
+		
+		List<List<Candidate>> candidates = new ArrayList<>();
+		try {
+			for (Future<List<Candidate>> f : futures) {
+				candidates.add(f.get());
+			}
+		} catch (ExecutionException e) {
+			// some executors (e.g., ForkJoinPool) wrap checked exceptions
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof ParseException) {
+					throw (ParseException) cause;
+				}
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// stop scoring the rest of the batch after an error
+			for (Future<List<Candidate>> f : futures) {
+				f.cancel(true);
+			}
+		}
+		
+		return candidates;
+	}
+
+	/**
+	 * Enable or disable pruning of dictionary subtrees that cannot contain
+	 * one of the k best candidates (enabled by default). Pruning does not
+	 * change the ranked candidates.
+	 * 
+	 * @param pruning
+	 */
+	public void setPruning(boolean pruning) {
+		this.pruning = pruning;
+	}
+
+	public boolean isPruning() {
+		return pruning;
+	}
+
+	/**
+	 * Split the search for each misspelling into tasks that score separate
+	 * subtrees of the dictionary trie on the given pool. The trie is split
+	 * after the given number of levels below the padding at the beginning
+	 * of each word, e.g., with one level there is one task for each first
+	 * character. Each task finds its own k best candidates, which are merged
+	 * into the same ranking as for a sequential search.
+	 * 
+	 * @param pool pool for subtree tasks or null for a sequential search
+	 * @param levels number of trie levels to split (at least 1)
+	 */
+	public void setParallelSearch(ForkJoinPool pool, int levels) {
+		if (levels < 1) {
+			throw new IllegalArgumentException("The number of levels to split must be at least 1.");
+		}
+		
+		parallelSearch = pool != null ? new ParallelSearch(pool, levels) : null;
+	}
+
+	/**
+	 * @return metrics for the queries and training of this spell checker
+	 */
+	public SpellCheckerMetrics getMetrics() {
+		return metrics;
+	}
 	
-		String misspelling = AlignmentUtils.padWord(m);
+	/**
+	 * Cache the ranked candidates for up to maxSize queries, evicting the
+	 * least recently used entries. Queries for all candidates (without k)
+	 * and queries with a custom dictionary map are not cached. The cache is
+	 * cleared whenever the dictionary or the model changes.
+	 * 
+	 * @param maxSize maximum number of cached queries or 0 to disable the cache
+	 */
+	public void setResultCache(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("The cache size must be 0 or greater.");
+		}
 		
-		return editDist(misspelling, aDict);
+		resultCache = maxSize > 0 ? new ResultCache(maxSize) : null;
 	}
 	
-	public List<Candidate> getRankedCandidates(final String m) throws ParseException {		
-		return getRankedCandidates(m, dict);
+	/**
+	 * @return the result cache with its hit, miss and eviction counters or
+	 * null if results are not cached
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
 	}
 	
-	private List<Candidate> editDist(final String m, Map<String, Double> aDict) {
-		// create a new dictionary trie for each calculation
-		Trie<List<Double>> dictTrie = makeDictTrie(aDict);
+	private void clearResultCache() {
+		ResultCache cache = resultCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Check a dictionary for reserved characters and compile it into an
+	 * index that can be reused for any number of queries.
+	 * 
+	 * @param aDict dictionary
+	 * @return dictionary index
+	 * @throws ParseException if the dictionary contains reserved characters
+	 */
+	public DictionaryIndex compileDictionary(Map<String, Double> aDict) throws ParseException {
+		long start = System.nanoTime();
+		DictionaryIndex index = new DictionaryIndex(aDict);
+		metrics.addTrainingTime(TrainingPhase.DICTIONARY_TRIE, System.nanoTime() - start);
+		
+		return index;
+	}
+	
+	private List<Candidate> editDist(final Search s, int k, ParallelSearch parallel) {
+		TopCandidates candidates = new TopCandidates(k);
+		
+		if (parallel == null) {
+			editDistCalc(s, 0, CompactTrie.ROOT, candidates);
+		} else {
+			List<Future<TopCandidates>> subtrees = new ArrayList<>();
+			List<Search> subtreeSearches = new ArrayList<>();
+			AtomicLong threshold = TopCandidates.newSharedThreshold();
+			
+			splitEditDistCalc(s, 0, CompactTrie.ROOT, k, parallel, threshold, subtrees, subtreeSearches);
+			
+			// the subtrees were split off in trie order, so merging them in
+			// order keeps candidates with the same probability in trie order
+			try {
+				for (Future<TopCandidates> f : subtrees) {
+					candidates.addAll(f.get());
+				}
+				
+				// all tasks are finished, so their counts can be read
+				for (Search subtree : subtreeSearches) {
+					s.addCounts(subtree);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			} finally {
+				for (Future<TopCandidates> f : subtrees) {
+					f.cancel(true);
+				}
+			}
+		}
 		
-		// initialize values in dictTrie for new calculation		
-		dictTrie.clearValues();
-		dictTrie.getRoot().setValue(new ArrayList<Double>());
-		while (dictTrie.getRoot().getValue().size() < m.length()) {
-			dictTrie.getRoot().getValue().add(Double.POSITIVE_INFINITY);
+		return candidates.getCandidates();
+	}
+
+	/**
+	 * Traverse the first levels of the dictionary trie and submit a task to
+	 * the search pool for each subtree below the split depth and for each
+	 * word above it.
+	 * 
+	 * @param s search state
+	 * @param depth depth of the dictionary trie node
+	 * @param node dictionary trie node
+	 * @param k number of candidates
+	 * @param parallel pool and split depth
+	 * @param threshold threshold shared by all tasks
+	 * @param subtrees results for the subtrees in trie order
+	 * @param subtreeSearches search states of the subtree tasks
+	 */
+	private void splitEditDistCalc(final Search s, final int depth, final int node, final int k, 
+			final ParallelSearch parallel, final AtomicLong threshold, final List<Future<TopCandidates>> subtrees, 
+			final List<Search> subtreeSearches) {
+		final DictionaryIndex index = s.index;
+		final CompactTrie dictTrie = index.getTrie();
+
+		if (depth >= paddingLength + parallel.splitLevels || dictTrie.isTerminal(node)) {
+			// each task needs its own copy of the rows above the subtree
+			// and of the path
+			final Search subtree = new Search(s, depth);
+			subtreeSearches.add(subtree);
+			
+			subtrees.add(parallel.pool.submit(() -> {
+				TopCandidates candidates = new TopCandidates(k, threshold);
+				editDistCalc(subtree, depth, node, candidates);
+				return candidates;
+			}));
+			
+			return;
 		}
 		
-		editDistCalc(m, "", dictTrie.getRoot());
-		List<Candidate> candidates = getRankedCandidates(dictTrie, window, aDict);
+		calcRow(s, depth);
 		
-		return candidates;
+		boolean prune = s.pruning && depth >= s.model.getMaxLhsLength();
+		double lowerBound = prune ? getLowerBound(depth, s.rows) : 0.0;
+
+		for (int child = dictTrie.getFirstChild(node); child != CompactTrie.NONE; child = dictTrie.getNextSibling(child)) {
+			if (s.allowed != null && !s.allowed.get(child)) {
+				continue;
+			}
+			if (prune && lowerBound + index.getPrior(child) > TopCandidates.getThreshold(threshold)) {
+				continue;
+			}
+
+			s.prefix[depth] = s.labelSymbols[dictTrie.getLabel(child)];
+			splitEditDistCalc(s, depth + 1, child, k, parallel, threshold, subtrees, subtreeSearches);
+		}
+	}
+	
+	/**
+	 * The settings of the parallel search (see setParallelSearch()), which
+	 * are replaced together, so that a query reads a pool and its split
+	 * depth at once.
+	 */
+	private static class ParallelSearch {
+		final ForkJoinPool pool;
+		final int splitLevels;
+		
+		ParallelSearch(ForkJoinPool pool, int splitLevels) {
+			this.pool = pool;
+			this.splitLevels = splitLevels;
+		}
 	}
 	
-	private void editDistCalc(final String m, final String prefix, final Trie<List<Double>>.Node node) {
+	private void editDistCalc(final Search s, final int depth, final int node, 
+			final TopCandidates candidates) {
+		final DictionaryIndex index = s.index;
+		final CompactTrie dictTrie = index.getTrie();
+		final double[] row = s.rows[depth];
+		
+		calcRow(s, depth);
 
-		// at root initialize first row of edit distance table
-		if (node.getParent() == null) {
-			node.getValue().set(0, 0.0);
+		// add a candidate for each complete word
+		if (dictTrie.isTerminal(node)) {
+			double prob = row[s.columns.getLeaf(0)] + index.getPrior(node);
+			s.candidatesScored++;
 
-			for (int i = 0; i < m.length(); i++) {
-				String sstr = m.substring(0, i);
-				node.getValue().set(i, getProb(new Alignment(AlignmentUtils.nullString, sstr)));
+			if (candidates.accepts(prob)) {
+				candidates.add(index.getWord(node), prob);
 			}
 		}
 
-		// initialize value of this node if necessary
-		if (node.getValue() == null) {
-			node.setValue(new ArrayList<Double>());
-			while (node.getValue().size() < m.length()) {
-				node.getValue().add(Double.POSITIVE_INFINITY);
+		// rows below this node are only extended from the rows of this node
+		// and its window ancestors, so the lowest cost in these rows bounds
+		// the cost of every word in the subtree; the first cell of a row is
+		// looked up directly instead, so this only holds for prefixes longer
+		// than the longest rule
+		boolean prune = s.pruning && depth >= s.model.getMaxLhsLength();
+		double lowerBound = prune ? getLowerBound(depth, s.rows) : 0.0;
+
+		// traverse the children
+		for (int child = dictTrie.getFirstChild(node); child != CompactTrie.NONE; child = dictTrie.getNextSibling(child)) {
+			// only visit the candidates and their ancestors
+			if (s.allowed != null && !s.allowed.get(child)) {
+				continue;
+			}
+			
+			// skip subtrees that cannot contain a better candidate, where
+			// the prior of the child is the best prior in its subtree
+			if (prune && lowerBound + index.getPrior(child) > candidates.getThreshold()) {
+				continue;
 			}
-		}
 
-		node.getValue().set(0, getProb(new Alignment(prefix, AlignmentUtils.nullString)));
+			s.prefix[depth] = s.labelSymbols[dictTrie.getLabel(child)];
+			editDistCalc(s, depth + 1, child, candidates);
+		}
+	}
 
-		for (int i = 1; i < m.length(); i++) {
-			String sstr = prefix;
-			String tstr = m.substring(0, i);
+	/**
+	 * Traverse the dictionary trie once for a batch of misspellings (see
+	 * getRankedCandidates(List, int)), adding the candidates of each
+	 * misspelling to its own collector in trie order. Only the misspellings
+	 * that may still have a better candidate in the subtree of a node are
+	 * active at the node and only the columns on their paths in the query
+	 * trie are calculated.
+	 * 
+	 * @param s search state with a query trie of the misspellings
+	 * @param depth depth of the dictionary trie node
+	 * @param node dictionary trie node
+	 * @param candidates candidates for each misspelling
+	 */
+	private void batchEditDistCalc(final Search s, final int depth, final int node, 
+			final TopCandidates[] candidates) {
+		final DictionaryIndex index = s.index;
+		final CompactTrie dictTrie = index.getTrie();
+		final QueryTrie columns = s.columns;
+		final double[] row = s.rows[depth];
+		final int[] queries = s.activeQueries[depth];
+		final int numQueries = s.numActiveQueries[depth];
+		
+		calcRow(s, depth, s.activeColumns[depth], s.numActiveColumns[depth]);
+		
+		// add a candidate for each complete word and active misspelling
+		if (dictTrie.isTerminal(node)) {
+			String word = null;
+			
+			for (int a = 0; a < numQueries; a++) {
+				int q = queries[a];
+				double prob = row[columns.getLeaf(q)] + index.getPrior(node);
+				s.candidatesScored++;
+				
+				if (candidates[q].accepts(prob)) {
+					if (word == null) {
+						word = index.getWord(node);
+					}
+					candidates[q].add(word, prob);
+				}
+			}
+		}
+		
+		// as in editDistCalc(), but with a lower bound for each misspelling
+		boolean prune = s.pruning && depth >= s.model.getMaxLhsLength();
+		double[] lowerBounds = prune ? getLowerBounds(depth, s) : null;
+		
+		for (int child = dictTrie.getFirstChild(node); child != CompactTrie.NONE; child = dictTrie.getNextSibling(child)) {
+			// a misspelling stays active if the subtree may contain a
+			// better candidate for it; once inactive, it stays inactive
+			// in the whole subtree, since the thresholds only decrease
+			double prior = index.getPrior(child);
+			int[] childQueries = s.activeQueries[depth + 1];
+			int numChildQueries = 0;
+			
+			for (int a = 0; a < numQueries; a++) {
+				int q = queries[a];
+				if (!prune || lowerBounds[q] + prior <= candidates[q].getThreshold()) {
+					childQueries[numChildQueries++] = q;
+				}
+			}
+			
+			if (numChildQueries == 0) {
+				continue;
+			}
+			
+			s.numActiveQueries[depth + 1] = numChildQueries;
+			setActiveColumns(s, depth + 1, numChildQueries == numQueries);
+			
+			s.prefix[depth] = s.labelSymbols[dictTrie.getLabel(child)];
+			batchEditDistCalc(s, depth + 1, child, candidates);
+		}
+	}
+	
+	/**
+	 * Find the columns on the paths of the active misspellings at the given
+	 * depth, which are a subset of the active columns of the parent.
+	 * 
+	 * @param s search state with a query trie of the misspellings
+	 * @param depth depth of the dictionary trie node
+	 * @param allActive whether all misspellings of the parent are active
+	 */
+	private static void setActiveColumns(final Search s, final int depth, final boolean allActive) {
+		final int[] parentColumns = s.activeColumns[depth - 1];
+		final int numParentColumns = s.numActiveColumns[depth - 1];
+		final int[] activeColumns = s.activeColumns[depth];
+		
+		if (allActive) {
+			System.arraycopy(parentColumns, 0, activeColumns, 0, numParentColumns);
+			s.numActiveColumns[depth] = numParentColumns;
+			return;
+		}
+		
+		// mark the paths from the leaves up to a column that is already
+		// marked, then keep the marked columns in order
+		final int[] parents = s.columns.getParents();
+		final int[] marks = s.columnMarks;
+		final int mark = ++s.columnMark;
+		final int[] queries = s.activeQueries[depth];
+		
+		for (int a = 0; a < s.numActiveQueries[depth]; a++) {
+			for (int c = s.columns.getLeaf(queries[a]); c != -1 && marks[c] != mark; c = parents[c]) {
+				marks[c] = mark;
+			}
+		}
+		
+		int numColumns = 0;
+		for (int a = 0; a < numParentColumns; a++) {
+			if (marks[parentColumns[a]] == mark) {
+				activeColumns[numColumns++] = parentColumns[a];
+			}
+		}
+		s.numActiveColumns[depth] = numColumns;
+	}
 
-			double lowest = Double.POSITIVE_INFINITY;
-			double e, e1, e2;
+	/**
+	 * Search the dictionary trie breadth-first, keeping only the beamWidth
+	 * best nodes at each depth (see setBeamWidth()). Candidates are found
+	 * out of trie order, so they are added with their trie nodes as their
+	 * order to rank candidates with the same probability as in editDist().
+	 * 
+	 * @param s search state, whose rows and path are used as a workspace
+	 * @param k number of candidates
+	 * @param beamWidth number of nodes to keep at each depth
+	 * @return ranked candidates
+	 */
+	private List<Candidate> beamEditDist(final Search s, final int k, final int beamWidth) {
+		final DictionaryIndex index = s.index;
+		final CompactTrie dictTrie = index.getTrie();
+		final TopCandidates candidates = new TopCandidates(k);
+		
+		calcRow(s, 0);
+		List<BeamNode> beam = new ArrayList<>();
+		beam.add(new BeamNode(CompactTrie.ROOT, Arrays.copyOf(s.rows, 1), new int[0], 0.0));
+		
+		for (int depth = 0; !beam.isEmpty(); depth++) {
+			final int childDepth = depth + 1;
+			boolean prune = s.pruning && childDepth >= s.model.getMaxLhsLength();
+			List<BeamNode> children = new ArrayList<>();
+			
+			for (BeamNode parent : beam) {
+				// the rows of the nodes on the path are shared by all nodes
+				// below them, so only the references are restored
+				System.arraycopy(parent.rows, 0, s.rows, 0, childDepth);
+				System.arraycopy(parent.prefix, 0, s.prefix, 0, depth);
+				
+				for (int child = dictTrie.getFirstChild(parent.node); child != CompactTrie.NONE; child = dictTrie.getNextSibling(child)) {
+					if (s.allowed != null && !s.allowed.get(child)) {
+						continue;
+					}
+					
+					s.prefix[depth] = s.labelSymbols[dictTrie.getLabel(child)];
+					s.rows[childDepth] = new double[s.columns.size()];
+					calcRow(s, childDepth);
+					double[] row = s.rows[childDepth];
+					
+					if (dictTrie.isTerminal(child)) {
+						double prob = row[s.columns.getLeaf(0)] + index.getPrior(child);
+						s.candidatesScored++;
+						
+						if (candidates.accepts(prob, child)) {
+							candidates.add(index.getWord(child), prob, child);
+						}
+					}
+					
+					if (dictTrie.getFirstChild(child) == CompactTrie.NONE) {
+						continue;
+					}
+					
+					// as in editDistCalc(), drop subtrees that cannot contain
+					// a better candidate
+					if (prune && getLowerBound(childDepth, s.rows) + index.getPrior(child) > candidates.getThreshold()) {
+						continue;
+					}
+					
+					double lowest = Double.POSITIVE_INFINITY;
+					for (double e : row) {
+						lowest = Math.min(e, lowest);
+					}
+					
+					children.add(new BeamNode(child, Arrays.copyOf(s.rows, childDepth + 1), 
+							Arrays.copyOf(s.prefix, childDepth), lowest + index.getPrior(child)));
+				}
+			}
+			
+			// keep the best nodes and expand them in trie order
+			if (children.size() > beamWidth) {
+				children.sort(BeamNode.BY_SCORE);
+				children = new ArrayList<>(children.subList(0, beamWidth));
+				children.sort(BeamNode.BY_NODE);
+			}
+			beam = children;
+		}
+		
+		return candidates.getCandidates();
+	}
+	
+	/**
+	 * A node in the beam with the rows and the path from the root to it.
+	 */
+	private static class BeamNode {
+		static final Comparator<BeamNode> BY_NODE = (a, b) -> Integer.compare(a.node, b.node);
+		static final Comparator<BeamNode> BY_SCORE = (a, b) -> {
+			int c = Double.compare(a.score, b.score);
+			return c != 0 ? c : Integer.compare(a.node, b.node);
+		};
+		
+		final int node;
+		final double[][] rows;
+		final int[] prefix;
+		// lowest cost in the node's row plus the best prior in its subtree
+		final double score;
+		
+		BeamNode(int node, double[][] rows, int[] prefix, double score) {
+			this.node = node;
+			this.rows = rows;
+			this.prefix = prefix;
+			this.score = score;
+		}
+	}
 
-			// get the beta trie node corresponding to the last character
-			// in the target string
-			Trie<Trie<Double>>.Node betaTrieNode = betaAlphaTrie
-					.getNode(tstr.length() == 0 ? AlignmentUtils.nullString : tstr.substring(tstr.length() - 1));
+	/**
+	 * Calculate the edit distance row for the dictionary trie node with the
+	 * given prefix. The row is stored at the depth of the node and the rows
+	 * for its ancestors are above it. The row has a cell for each column of
+	 * the query trie, i.e., for each prefix m[0..i) of the misspellings.
+	 * 
+	 * @param s search state
+	 * @param depth depth of the dictionary trie node
+	 */
+	private void calcRow(final Search s, final int depth) {
+		calcRow(s, depth, s.allColumns, s.allColumns.length);
+	}
+	
+	/**
+	 * Calculate the cells of the given columns of the edit distance row. The
+	 * columns have to be in order and include the parent of each column,
+	 * whose cells in the rows above have to be calculated.
+	 * 
+	 * @param s search state
+	 * @param depth depth of the dictionary trie node
+	 * @param columns query trie nodes
+	 * @param numColumns number of columns
+	 */
+	private void calcRow(final Search s, final int depth, final int[] columns, final int numColumns) {
+		final CompiledErrorModel errorModel = s.model;
+		final int[] parents = s.columns.getParents();
+		final int[] symbols = s.columns.getSymbols();
+		final int[] lengths = s.columns.getLengths();
+		final int[][] words = s.columns.getWords();
+		final int[] prefix = s.prefix;
+		final double[][] rows = s.rows;
+		final double[] row = rows[depth];
+		final int nullSymbol = errorModel.getNullSymbol();
+		final int betaRoot = errorModel.getBetaRoot();
+		long ruleLookups = 0;
 
-			for (int j = tstr.length(); j >= 0 && j >= tstr.length() - window - 1; j--) {
-				Trie<List<Double>>.Node pnode = node;
+		// at root initialize first row of edit distance table, otherwise
+		// each cell left over from the previous node at this depth is reset
+		// before it is calculated
+		if (depth == 0) {
+			for (int a = 0; a < numColumns; a++) {
+				int c = columns[a];
+				row[c] = errorModel.getCost(prefix, 0, words[c], lengths[c]);
+			}
+			ruleLookups += numColumns;
+		}
 
-				Trie<Trie<Double>>.Node relevantBetaTrieNode = betaTrieNode;
+		// the root column is the first column of every misspelling
+		row[QueryTrie.ROOT] = errorModel.getCost(prefix, depth, words[QueryTrie.ROOT], 0);
+		ruleLookups++;
 
-				// in the first iteration the target (beta) substring
-				// is empty, so replace the beta trie node with the one
-				// for the empty string
-				if (betaAlphaTrie != null && j == tstr.length()) {
-					relevantBetaTrieNode = betaAlphaTrie.getNode(AlignmentUtils.nullString);
-				}
+		// the parent of each column comes before it, so the cells of the
+		// shorter prefixes in this row are done before they are used
+		for (int a = 1; a < numColumns; a++) {
+			final int c = columns[a];
+			final int i = lengths[c];
+			double lowest = Double.POSITIVE_INFINITY;
+			
+			if (depth > 0) {
+				row[c] = Double.POSITIVE_INFINITY;
+			}
+			double e, e1, e2;
 
-				// get the alpha trie node corresponding to the last 
-				// character in the source string
-				Trie<Double> alphaTrie = null;
-				Trie<Double>.Node alphaTrieNode = null;
+			// get the beta state corresponding to the last symbol in the
+			// target string m[0..i)
+			int betaState = errorModel.next(betaRoot, symbols[c]);
 
-				if (relevantBetaTrieNode != null) {
-					alphaTrie = relevantBetaTrieNode.getValue();
-					if (alphaTrie != null) {
-						alphaTrieNode = alphaTrie.getNode(
-								sstr.length() == 0 ? AlignmentUtils.nullString : sstr.substring(sstr.length() - 1));
-					}
-				}
+			// column cj is the prefix m[0..j)
+			for (int j = i, cj = c; j >= 0 && j >= i - window - 1; j--, cj = parents[cj]) {
+				// in the first iteration the target (beta) substring
+				// is empty, so use the beta state for the empty string
+				int alphaRoot = errorModel.getAlphaRoot(j == i ? 
+						errorModel.next(betaRoot, nullSymbol) : betaState);
 
-				for (int k = sstr.length(); k >= 0 && k >= sstr.length() - window - 1; k--) {
-					Trie<Double>.Node relevantAlphaTrieNode = alphaTrieNode;
+				// get the alpha state corresponding to the last symbol in
+				// the source string
+				int alphaState = errorModel.next(alphaRoot, depth == 0 ? nullSymbol : prefix[depth - 1]);
 
+				for (int k = depth; k >= 0 && k >= depth - window - 1; k--) {
 					// in the first iteration the source (alpha) substring 
-					// is empty, so replace the alpha trie node with the one 
-					// for the empty string
-					if (alphaTrie != null && k == sstr.length()) {
-						relevantAlphaTrieNode = alphaTrie.getNode(AlignmentUtils.nullString);
-					}
+					// is empty, so use the alpha state for the empty string
+					int relevantAlphaState = k == depth ? errorModel.next(alphaRoot, nullSymbol) : alphaState;
 
-					if (pnode == null) {
-						e1 = node.getValue().get(j);
-					} else {
-						e1 = pnode.getValue().get(j);
-						pnode = pnode.getParent();
-					}
+					e1 = rows[k][cj];
 
-					e2 = getProb(relevantAlphaTrieNode);
+					e2 = errorModel.getCost(relevantAlphaState);
+					ruleLookups++;
 
 					e = e1 + e2;
 
 					lowest = Math.min(e, lowest);
 
-					// for the first iteration, alphaTrieNode is replaced with
-					// the alpha trie node for the null string, so only move down 
-					// the alpha trie starting at the second iteration
-					if (k < sstr.length()) {
-						if (alphaTrieNode != null && k > 0) {
-							alphaTrieNode = alphaTrieNode.findChild(String.valueOf(sstr.charAt(k - 1)));
-						} else {
-							alphaTrieNode = null;
+					// for the first iteration, alphaState is replaced with
+					// the alpha state for the null string, so only move down 
+					// the alpha trie starting at the second iteration; once
+					// there are no longer alphas, the rest of the costs are
+					// infinite
+					if (k < depth) {
+						alphaState = k > 0 ? errorModel.next(alphaState, prefix[k - 1]) : CompiledErrorModel.DEAD;
+
+						if (alphaState == CompiledErrorModel.DEAD) {
+							break;
 						}
 					}
 				}
 
-				// for the first iteration, betaTrieNode is replaced with
-				// the beta trie node for the null string, so only move down 
-				// the beta trie starting at the second iteration
-				if (j < tstr.length()) {
-					if (betaTrieNode != null && j > 0) {
-						betaTrieNode = betaTrieNode.findChild(String.valueOf(tstr.charAt(j - 1)));
-					} else {
-						betaTrieNode = null;
+				// for the first iteration, betaState is replaced with the
+				// beta state for the null string, so only move down the beta
+				// trie starting at the second iteration
+				if (j < i) {
+					betaState = j > 0 ? errorModel.next(betaState, symbols[cj]) : CompiledErrorModel.DEAD;
+
+					if (betaState == CompiledErrorModel.DEAD) {
+						break;
 					}
 				}
 			}
 
-			node.getValue().set(i, lowest);
-		}
-
-		// traverse the children
-		for (final Trie<List<Double>>.Node child : node.getChildren()) {
-			if ((null != child) && (null != child.getKey())) {
-				editDistCalc(m, prefix + child.getKey(), child);
-			}
-		}
-	}
-
-	private Trie<List<Double>> makeDictTrie(Map<String, Double> dict) {
-		// create a trie for the dictionary
-		Trie<List<Double>> dictTrie = new Trie<>();
-
-		for (String w : dict.keySet()) {
-			dictTrie.put(AlignmentUtils.padWord(w), new ArrayList<Double>());
+			row[c] = lowest;
 		}
 		
-		return dictTrie;
+		s.nodesVisited++;
+		s.cellsComputed += numColumns;
+		s.ruleLookups += ruleLookups;
 	}
 
 	/**
-	 * Do a full lookup in the beta-alpha trie for the probability of an
-	 * alignment, returning infinity if the alignment is not found.
+	 * Find the lowest cost in the rows of a node and the window ancestors
+	 * above it, which is a lower bound for the cost in any row below the node.
 	 * 
-	 * @param a
+	 * @param depth depth of the node
+	 * @param rows rows on the current path
 	 * @return
 	 */
-	private double getProb(Alignment a) {
-		if (a.lhs.length() == 0) {
-			a.lhs = AlignmentUtils.nullString;
-		}
-		if (a.rhs.length() == 0) {
-			a.rhs = AlignmentUtils.nullString;
-		}
+	private double getLowerBound(final int depth, final double[][] rows) {
+		double lowest = Double.POSITIVE_INFINITY;
 
-		Trie<Double> alphaTrie = betaAlphaTrie.get(StringUtils.reverse(a.rhs));
-
-		if (alphaTrie != null) {
-			Double prob = alphaTrie.get(StringUtils.reverse(a.lhs));
-			if (prob != null) {
-				return prob;
+		for (int k = depth; k >= 0 && k >= depth - window; k--) {
+			for (double e : rows[k]) {
+				lowest = Math.min(e, lowest);
 			}
 		}
 
-		return Double.POSITIVE_INFINITY;
+		return lowest;
 	}
 
 	/**
-	 * Find the probability at a given trie node, returning infinity if the node
-	 * or node value does not exist in the trie.
+	 * Find the lower bound (see getLowerBound()) for each active misspelling
+	 * in a batch, which is the lowest cost in the columns on its path in the
+	 * query trie.
 	 * 
-	 * @param node
-	 * @return
+	 * @param depth depth of the node
+	 * @param s search state with a query trie of the misspellings
+	 * @return lower bounds indexed by misspelling
 	 */
-	private Double getProb(Trie<Double>.Node node) {
-		if (node != null) {
-			if (node.getValue() != null) {
-				return node.getValue();
-			}
-		}
-
-		return Double.POSITIVE_INFINITY;
-	}
-
-	private void makeBetaAlphaTrie(ErrorModel e) {
-		betaAlphaTrie = new Trie<>();
-
-		// first create the alpha tries for each RHS
-		Map<String, Trie<Double>> alphaTries = new HashMap<>();
-
-		for (Map.Entry<Alignment, Double> a : e.getModel().entrySet()) {
-			String lhs = a.getKey().lhs;
-			String rhs = a.getKey().rhs;
-			double prob = a.getValue();
-
-			if (!alphaTries.containsKey(rhs)) {
-				alphaTries.put(rhs, new Trie<Double>());
+	private double[] getLowerBounds(final int depth, final Search s) {
+		final int[] parents = s.columns.getParents();
+		final int[] activeColumns = s.activeColumns[depth];
+		final int[] queries = s.activeQueries[depth];
+		final double[] pathMins = s.pathMins;
+		final double[] lowerBounds = s.lowerBounds[depth];
+		
+		// the parent of each column comes before it and is also active
+		for (int a = 0; a < s.numActiveColumns[depth]; a++) {
+			int c = activeColumns[a];
+			double lowest = c == QueryTrie.ROOT ? Double.POSITIVE_INFINITY : pathMins[parents[c]];
+			
+			for (int k = depth; k >= 0 && k >= depth - window; k--) {
+				lowest = Math.min(s.rows[k][c], lowest);
 			}
-
-			alphaTries.get(rhs).put(StringUtils.reverse(lhs), -Math.log(prob));
-
+			
+			pathMins[c] = lowest;
 		}
-
-		// then create the whole beta-alpha trie
-		for (String rhs : alphaTries.keySet()) {
-			betaAlphaTrie.put(StringUtils.reverse(rhs), alphaTries.get(rhs));
+		
+		for (int a = 0; a < s.numActiveQueries[depth]; a++) {
+			lowerBounds[queries[a]] = pathMins[s.columns.getLeaf(queries[a])];
 		}
+		
+		return lowerBounds;
 	}
 
 	/**
-	 * Read the probabilities for all candidates off the dictTrie and 
-	 * return a ranked list of Candidates.
-	 * 
-	 * @param dictTrie
-	 * @param window
-	 * @return
+	 * The state of the search for one misspelling or a batch of
+	 * misspellings: the error model and dictionary index it uses and the
+	 * edit distance rows and path for the current dictionary trie node.
 	 */
-	private List<Candidate> getRankedCandidates(Trie<List<Double>> dictTrie, int window, Map<String, Double> aDict) {
-		List<Candidate> c = new ArrayList<>();
-		Map<String, List<Double>> v = dictTrie.traverse(true);
-		
-		for (Map.Entry<String, List<Double>> p : v.entrySet()) {
-			String candidate = p.getKey();
-			candidate = candidate.substring(paddingLength, candidate.length() - paddingLength);
+	private static class Search {
+		final CompiledErrorModel model;
+		final DictionaryIndex index;
+		// pruning is read once, so a query does not see it change
+		final boolean pruning;
+		// prefixes of the padded misspellings as error model symbols, which
+		// are the columns of the rows
+		final QueryTrie columns;
+		// error model symbols for the dictionary symbols
+		final int[] labelSymbols;
+		// the dictionary trie is shared, so the edit distance rows for this
+		// calculation are stored separately for each query: the trie is
+		// traversed depth-first, so only the rows for the nodes on the
+		// current path are needed and the row for each depth is reused
+		// for all nodes at that depth; the path is stored in the same way
+		// as error model symbols
+		final double[][] rows;
+		final int[] prefix;
+		// nodes to visit or null to visit all nodes
+		BitSet allowed = null;
+		// all columns in order
+		final int[] allColumns;
+		// for batches (see initBatch()): the active misspellings and
+		// columns at each depth, the lower bounds for each depth and
+		// misspelling, the lowest cost on the path to each column and marks
+		// for the columns
+		int[][] activeQueries;
+		int[] numActiveQueries;
+		int[][] activeColumns;
+		int[] numActiveColumns;
+		double[][] lowerBounds;
+		double[] pathMins;
+		int[] columnMarks;
+		int columnMark = 0;
+		// work done by this search (see QueryStats)
+		long nodesVisited = 0;
+		long cellsComputed = 0;
+		long ruleLookups = 0;
+		long candidatesScored = 0;
 
-			Double prob = p.getValue().get(p.getValue().size() - 1);
-			prob = prob + -Math.log(aDict.get(candidate));
+		Search(CompiledErrorModel model, DictionaryIndex index, String paddedWord, boolean pruning) {
+			// characters that are not in the error model do not match any rule
+			this(model, index, new QueryTrie(model.getSymbols(paddedWord)), pruning);
+		}
+		
+		Search(CompiledErrorModel model, DictionaryIndex index, QueryTrie columns, boolean pruning) {
+			this.model = model;
+			this.index = index;
+			this.pruning = pruning;
+			this.columns = columns;
 			
-			c.add(new Candidate(candidate, prob));
+			// the dictionary is encoded with its own alphabet, so map its
+			// symbols to error model symbols
+			Alphabet dictAlphabet = index.getAlphabet();
+			labelSymbols = new int[dictAlphabet.size()];
+			for (int id = 0; id < labelSymbols.length; id++) {
+				labelSymbols[id] = model.getSymbol(dictAlphabet.getCodePoint(id));
+			}
+			
+			rows = new double[index.getMaxDepth() + 1][columns.size()];
+			prefix = new int[index.getMaxDepth()];
+			
+			allColumns = new int[columns.size()];
+			for (int c = 0; c < allColumns.length; c++) {
+				allColumns[c] = c;
+			}
 		}
 		
-		Collections.sort(c);
+		/**
+		 * Allocate the state for a batch with all misspellings and columns
+		 * active at the root.
+		 */
+		void initBatch() {
+			int numQueries = columns.getNumQueries();
+			
+			activeQueries = new int[rows.length][numQueries];
+			numActiveQueries = new int[rows.length];
+			activeColumns = new int[rows.length][columns.size()];
+			numActiveColumns = new int[rows.length];
+			lowerBounds = new double[rows.length][numQueries];
+			pathMins = new double[columns.size()];
+			columnMarks = new int[columns.size()];
+			
+			for (int q = 0; q < numQueries; q++) {
+				activeQueries[0][q] = q;
+			}
+			numActiveQueries[0] = numQueries;
+			System.arraycopy(allColumns, 0, activeColumns[0], 0, allColumns.length);
+			numActiveColumns[0] = allColumns.length;
+		}
+
+		/**
+		 * Copy the rows above the given depth and the path for a subtree.
+		 */
+		Search(Search s, int depth) {
+			model = s.model;
+			index = s.index;
+			pruning = s.pruning;
+			columns = s.columns;
+			allColumns = s.allColumns;
+			labelSymbols = s.labelSymbols;
+			
+			rows = new double[s.rows.length][];
+			for (int d = 0; d < rows.length; d++) {
+				rows[d] = d < depth ? s.rows[d].clone() : new double[columns.size()];
+			}
+			prefix = s.prefix.clone();
+			allowed = s.allowed;
+		}
 		
-		return c;
+		void addCounts(Search s) {
+			nodesVisited += s.nodesVisited;
+			cellsComputed += s.cellsComputed;
+			ruleLookups += s.ruleLookups;
+			candidatesScored += s.candidatesScored;
+		}
 	}
 }
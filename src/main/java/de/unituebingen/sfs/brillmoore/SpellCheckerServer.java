@@ -0,0 +1,256 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that answers correction requests with a spell checker
+ * that is trained or loaded once. The server only listens on the loopback
+ * interface.
+ *
+ * Requests are sent to /candidates, either as GET with a single misspelling
+ * in the parameter q or as POST with one misspelling per line in the body
+ * (UTF-8). Further TAB-separated columns of a POSTed line, e.g., the target
+ * and count of the testing file format, are copied into the output. The
+ * optional parameters are k (number of candidates) and format (tsv, the
+ * default, or json).
+ *
+ * The TSV output has one line per misspelling in the same format as the
+ * command line output. The JSON output is an array with an object for each
+ * misspelling:
+ *
+ * <pre>
+ * [{"misspelling":"Abril","candidates":[{"target":"April","prob":1.6094379124341003}]}]
+ * </pre>
+ *
+ * Requests are handled concurrently on the executor given to the
+ * constructor.
+ */
+public class SpellCheckerServer {
+	public static final String PATH = "/candidates";
+
+	private final SpellChecker spellchecker;
+	private final int numCand;
+	private final HttpServer server;
+
+	/**
+	 * Create a server, which is started with start().
+	 *
+	 * @param spellchecker spell checker with a dictionary
+	 * @param numCand default number of candidates for each misspelling
+	 * @param port port on the loopback interface (0 for any free port)
+	 * @param executor executor for handling requests
+	 * @throws IOException if the server cannot be bound to the port
+	 */
+	public SpellCheckerServer(SpellChecker spellchecker, int numCand, int port, Executor executor) throws IOException {
+		if (numCand <= 0) {
+			throw new IllegalArgumentException("The number of candidates must be greater than 0.");
+		}
+
+		this.spellchecker = spellchecker;
+		this.numCand = numCand;
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext(PATH, this::handle);
+		server.setExecutor(executor);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stop the server, waiting at most delay seconds for requests in progress
+	 * to finish.
+	 *
+	 * @param delay
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+	}
+
+	/**
+	 * @return port the server is bound to
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+			int k = numCand;
+			if (params.containsKey("k")) {
+				try {
+					k = Integer.parseInt(params.get("k"));
+				} catch (NumberFormatException e) {
+					k = 0;
+				}
+				if (k <= 0) {
+					throw new ParseException("The number of candidates (k) must be an integer greater than 0.", 0);
+				}
+			}
+
+			String format = params.getOrDefault("format", "tsv");
+			if (!format.equals("tsv") && !format.equals("json")) {
+				throw new ParseException("The format must be tsv or json.", 0);
+			}
+
+			List<String[]> lines = new ArrayList<>();
+			if (method.equals("GET")) {
+				if (!params.containsKey("q")) {
+					throw new ParseException("Please specify a misspelling (q).", 0);
+				}
+				lines.add(new String[] { params.get("q") });
+			} else if (method.equals("POST")) {
+				BufferedReader body = new BufferedReader(
+						new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+				String line;
+				while ((line = body.readLine()) != null) {
+					if (!line.isEmpty()) {
+						lines.add(line.split("\t"));
+					}
+				}
+			} else {
+				exchange.getResponseHeaders().set("Allow", "GET, POST");
+				send(exchange, 405, "text/plain", "Only GET and POST requests are supported.\n");
+				return;
+			}
+
+			// score the lines as a batch, which shares the work for common
+			// prefixes of the misspellings
+			List<String> misspellings = new ArrayList<>();
+			for (String[] columns : lines) {
+				misspellings.add(columns[0]);
+			}
+			List<List<Candidate>> candidates = spellchecker.getRankedCandidates(misspellings, k);
+
+			if (format.equals("json")) {
+				send(exchange, 200, "application/json", toJson(lines, candidates));
+			} else {
+				send(exchange, 200, "text/tab-separated-values", toTsv(lines, candidates));
+			}
+		} catch (ParseException e) {
+			send(exchange, 400, "text/plain", e.getMessage() + "\n");
+		} catch (RuntimeException e) {
+			send(exchange, 500, "text/plain", "The request could not be handled: " + e + "\n");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) throws ParseException {
+		Map<String, String> params = new HashMap<>();
+
+		if (query == null || query.isEmpty()) {
+			return params;
+		}
+
+		try {
+			for (String param : query.split("&")) {
+				int eq = param.indexOf('=');
+				if (eq < 0) {
+					params.put(URLDecoder.decode(param, "UTF-8"), "");
+				} else {
+					params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+							URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			throw new ParseException("The query could not be parsed: " + e.getMessage(), 0);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return params;
+	}
+
+	private static String toTsv(List<String[]> lines, List<List<Candidate>> candidates) {
+		StringBuilder s = new StringBuilder();
+
+		for (int i = 0; i < lines.size(); i++) {
+			s.append(String.join("\t", lines.get(i)));
+			StreamScorer.appendCandidates(s, candidates.get(i));
+			s.append('\n');
+		}
+
+		return s.toString();
+	}
+
+	private static String toJson(List<String[]> lines, List<List<Candidate>> candidates) {
+		StringBuilder s = new StringBuilder("[");
+
+		for (int i = 0; i < lines.size(); i++) {
+			if (i > 0) {
+				s.append(',');
+			}
+			s.append("{\"misspelling\":");
+			appendJsonString(s, lines.get(i)[0]);
+			s.append(",\"candidates\":[");
+
+			List<Candidate> cands = candidates.get(i);
+			for (int j = 0; j < cands.size(); j++) {
+				if (j > 0) {
+					s.append(',');
+				}
+				s.append("{\"target\":");
+				appendJsonString(s, cands.get(j).getTarget());
+
+				// -log(0) is infinite, which JSON cannot represent
+				double prob = cands.get(j).getProb();
+				s.append(",\"prob\":").append(Double.isInfinite(prob) || Double.isNaN(prob) ? "null" : Double.toString(prob));
+				s.append('}');
+			}
+			s.append("]}");
+		}
+
+		return s.append("]\n").toString();
+	}
+
+	private static void appendJsonString(StringBuilder s, String value) {
+		s.append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				s.append('\\').append(c);
+			} else if (c < 0x20) {
+				s.append(String.format("\\u%04x", (int) c));
+			} else {
+				s.append(c);
+			}
+		}
+
+		s.append('"');
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
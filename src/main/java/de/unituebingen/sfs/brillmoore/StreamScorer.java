@@ -0,0 +1,166 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Scores misspellings as they are read, one per line in the testing file
+ * format (misspelling TAB target TAB count), and writes the input columns
+ * followed by the ranked candidates in the same order as the input.
+ *
+ * The misspellings are scored on an executor with at most a fixed number of
+ * lines in flight, so the memory used does not depend on the size of the
+ * input. Whenever no more input is available yet (e.g., when reading from a
+ * pipe), all pending lines are finished and the output is flushed.
+ */
+public class StreamScorer {
+	private final SpellChecker spellchecker;
+	private final int numCand;
+	private final ExecutorService executor;
+	private final int maxInFlight;
+
+	/**
+	 * @param spellchecker spell checker with a dictionary
+	 * @param numCand number of candidates for each misspelling
+	 * @param executor executor for scoring
+	 * @param maxInFlight maximum number of lines read but not yet written
+	 */
+	public StreamScorer(SpellChecker spellchecker, int numCand, ExecutorService executor, int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("The number of lines in flight must be at least 1.");
+		}
+
+		this.spellchecker = spellchecker;
+		this.numCand = numCand;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	private static class Pending {
+		final String[] columns;
+		final Future<List<Candidate>> candidates;
+
+		Pending(String[] columns, Future<List<Candidate>> candidates) {
+			this.columns = columns;
+			this.candidates = candidates;
+		}
+	}
+
+	/**
+	 * Score all misspellings from the input. The output is flushed at the
+	 * end, but not closed.
+	 *
+	 * @param in input in the testing file format
+	 * @param out output
+	 * @throws IOException if the input cannot be read or the output cannot be written
+	 * @throws ParseException if a line is not in the testing file format or
+	 * a misspelling contains reserved characters
+	 * @throws InterruptedException if interrupted while waiting for results
+	 */
+	public void score(BufferedReader in, Writer out) throws IOException, ParseException, InterruptedException {
+		ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+		try {
+			String line;
+			int lineCount = 1;
+
+			while (true) {
+				// don't hold back finished lines while waiting for input
+				if (!pending.isEmpty() && !in.ready()) {
+					while (!pending.isEmpty()) {
+						write(pending.poll(), out);
+					}
+					out.flush();
+				}
+
+				if ((line = in.readLine()) == null) {
+					break;
+				}
+
+				final String[] columns = parseLine(line, lineCount);
+				pending.add(new Pending(columns, executor.submit(() -> spellchecker.getRankedCandidates(columns[0], numCand))));
+				lineCount++;
+
+				if (pending.size() >= maxInFlight) {
+					write(pending.poll(), out);
+				}
+			}
+
+			while (!pending.isEmpty()) {
+				write(pending.poll(), out);
+			}
+			out.flush();
+		} finally {
+			// stop scoring the rest of the input after an error
+			for (Pending p : pending) {
+				p.candidates.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Split a line into misspelling, target and count (1 if missing).
+	 */
+	private static String[] parseLine(String line, int lineCount) throws ParseException {
+		String[] lineParts = line.split("\t");
+
+		if (lineParts.length < 2) {
+			throw new ParseException("The testing data could not be parsed at line " + lineCount + ".  The format is: \n" +
+					"misspelling TAB target TAB count", lineCount);
+		}
+
+		String count = "1";
+		if (lineParts.length >= 3) {
+			try {
+				count = Integer.toString(Integer.parseInt(lineParts[2]));
+			} catch (NumberFormatException e) {
+				throw new ParseException("The count at line " + lineCount + " of the testing data is not an integer: " +
+						lineParts[2], lineCount);
+			}
+		}
+
+		return new String[] { lineParts[0], lineParts[1], count };
+	}
+
+	private static void write(Pending p, Writer out) throws IOException, ParseException, InterruptedException {
+		List<Candidate> candidates;
+
+		try {
+			candidates = p.candidates.get();
+		} catch (ExecutionException e) {
+			// some executors (e.g., ForkJoinPool) wrap checked exceptions
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof ParseException) {
+					throw (ParseException) cause;
+				}
+			}
+			throw new RuntimeException(e.getCause());
+		}
+
+		StringBuilder s = new StringBuilder();
+		s.append(p.columns[0]).append('\t').append(p.columns[1]).append('\t').append(p.columns[2]);
+		appendCandidates(s, candidates);
+
+		out.write(s.toString());
+		out.write(System.lineSeparator());
+	}
+
+	/**
+	 * Append the candidates in the output format: a TAB before each
+	 * candidate and its -log(prob) with two decimals.
+	 */
+	static void appendCandidates(StringBuilder s, List<Candidate> candidates) {
+		for (Candidate cand : candidates) {
+			s.append('\t').append(cand.getTarget());
+			s.append('\t').append(String.format(Locale.US, "%.2f", cand.getProb()));
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
+
+/**
+ * A symmetric delete index (as in SymSpell) for a dictionary index, which
+ * finds candidate corrections for a misspelling without scoring every word
+ * in the dictionary. Every string that can be produced by deleting up to
+ * maxDistance characters from a word is stored with the word, so a word is
+ * a candidate if the misspelling and the word have a common delete, which
+ * includes all words within maxDistance edits of the misspelling and some
+ * words further away. Only the first prefixLength characters of the words
+ * and misspellings are used, which bounds the number of deletes per word.
+ * The characters are code points, as in the error model.
+ *
+ * The deletes are stored as 64-bit hashes, not as strings, with the
+ * dictionary trie node of each word. A hash collision only adds another
+ * candidate, since all candidates are scored by the spell checker.
+ *
+ * The index is built once and is only read by queries, so it can be shared
+ * by any number of (concurrent) queries.
+ */
+public class SymmetricDeleteIndex {
+	public static final int DEFAULT_PREFIX_LENGTH = 7;
+
+	// the prefix is limited by the positions of the deletes in a long
+	private static final int MAX_PREFIX_LENGTH = 63;
+
+	private final DictionaryIndex index;
+	private final int maxDistance;
+	private final int prefixLength;
+
+	// open addressing table from delete hashes to the first entry (+ 1) of
+	// a linked list of the trie nodes of words with the delete
+	private long[] slotHashes = new long[1 << 16];
+	private int[] slotEntries = new int[1 << 16];
+	private int numSlots = 0;
+	private int[] entryNodes = new int[1 << 16];
+	private int[] entryNext = new int[1 << 16];
+	private int numEntries = 0;
+
+	/**
+	 * Build the index for all words in a dictionary index.
+	 *
+	 * @param index dictionary index
+	 * @param maxDistance maximum number of deletes (at least 0)
+	 * @param prefixLength number of characters of each word to use (at least 1)
+	 */
+	public SymmetricDeleteIndex(DictionaryIndex index, int maxDistance, int prefixLength) {
+		if (maxDistance < 0) {
+			throw new IllegalArgumentException("The maximum number of deletes must be 0 or greater.");
+		}
+		if (prefixLength < 1) {
+			throw new IllegalArgumentException("The prefix length must be at least 1.");
+		}
+
+		this.index = index;
+		this.maxDistance = maxDistance;
+		this.prefixLength = Math.min(prefixLength, MAX_PREFIX_LENGTH);
+
+		CompactTrie trie = index.getTrie();
+		for (int node = 0; node < trie.size(); node++) {
+			if (trie.isTerminal(node)) {
+				final int wordNode = node;
+				forEachDelete(index.getWord(node), hash -> add(hash, wordNode));
+			}
+		}
+	}
+
+	private interface DeleteConsumer {
+		void accept(long hash);
+	}
+
+	/**
+	 * Pass the hash of every string produced by deleting up to maxDistance
+	 * characters from the prefix of s to the consumer.
+	 */
+	private void forEachDelete(String s, DeleteConsumer consumer) {
+		int[] codePoints = new int[Math.min(s.codePointCount(0, s.length()), prefixLength)];
+
+		for (int i = 0, offset = 0; i < codePoints.length; i++, offset = s.offsetByCodePoints(offset, 1)) {
+			codePoints[i] = s.codePointAt(offset);
+		}
+
+		forEachDelete(codePoints, codePoints.length, 0, maxDistance, 0L, consumer);
+	}
+
+	private static void forEachDelete(int[] s, int length, int start, int remaining, long deleted,
+			DeleteConsumer consumer) {
+		consumer.accept(hash(s, length, deleted));
+
+		if (remaining == 0) {
+			return;
+		}
+
+		for (int i = start; i < length; i++) {
+			forEachDelete(s, length, i + 1, remaining - 1, deleted | (1L << i), consumer);
+		}
+	}
+
+	private static long hash(int[] s, int length, long deleted) {
+		// FNV-1a over the remaining code points followed by a final mix
+		long h = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < length; i++) {
+			if ((deleted & (1L << i)) == 0) {
+				h = (h ^ s[i]) * 0x100000001b3L;
+			}
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	private int findSlot(long hash) {
+		int mask = slotHashes.length - 1;
+		int slot = (int) hash & mask;
+
+		while (slotEntries[slot] != 0 && slotHashes[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void add(long hash, int node) {
+		int slot = findSlot(hash);
+		int head = slotEntries[slot];
+
+		// the deletes of a word are added together, so a delete that can be
+		// produced in more than one way is already at the head of its list
+		if (head != 0 && entryNodes[head - 1] == node) {
+			return;
+		}
+
+		if (numEntries == entryNodes.length) {
+			entryNodes = Arrays.copyOf(entryNodes, 2 * numEntries);
+			entryNext = Arrays.copyOf(entryNext, 2 * numEntries);
+		}
+		entryNodes[numEntries] = node;
+		entryNext[numEntries] = head;
+		numEntries++;
+
+		if (head == 0) {
+			slotHashes[slot] = hash;
+			numSlots++;
+		}
+		slotEntries[slot] = numEntries;
+
+		// keep the table at most half full
+		if (2 * numSlots > slotHashes.length) {
+			rehash();
+		}
+	}
+
+	private void rehash() {
+		long[] oldHashes = slotHashes;
+		int[] oldEntries = slotEntries;
+		slotHashes = new long[2 * oldHashes.length];
+		slotEntries = new int[2 * oldEntries.length];
+
+		for (int i = 0; i < oldHashes.length; i++) {
+			if (oldEntries[i] != 0) {
+				int slot = findSlot(oldHashes[i]);
+				slotHashes[slot] = oldHashes[i];
+				slotEntries[slot] = oldEntries[i];
+			}
+		}
+	}
+
+	/**
+	 * Find the candidate corrections for a misspelling.
+	 *
+	 * @param m misspelling
+	 * @return dictionary trie nodes of the candidate words in trie order
+	 */
+	public int[] getCandidates(String m) {
+		final BitSet candidates = new BitSet();
+
+		forEachDelete(m, hash -> {
+			int slot = findSlot(hash);
+			for (int entry = slotEntries[slot]; entry != 0; entry = entryNext[entry - 1]) {
+				candidates.set(entryNodes[entry - 1]);
+			}
+		});
+
+		return candidates.stream().toArray();
+	}
+
+	/**
+	 * @return the dictionary index the candidates are found in
+	 */
+	public DictionaryIndex getDictionaryIndex() {
+		return index;
+	}
+
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	public int getPrefixLength() {
+		return prefixLength;
+	}
+
+	/**
+	 * @return number of distinct deletes
+	 */
+	public int getNumDeletes() {
+		return numSlots;
+	}
+
+	/**
+	 * @return number of stored (delete, word) pairs
+	 */
+	public int size() {
+		return numEntries;
+	}
+}
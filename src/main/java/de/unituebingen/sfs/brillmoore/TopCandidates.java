@@ -0,0 +1,208 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the k best candidates found during a search in a bounded heap.
+ * Candidates with the same probability are ranked in the order in which
+ * they were added, so a search that adds candidates in trie order returns
+ * the same ranking as sorting all candidates found in trie order. A search
+ * that adds candidates in another order can pass the order of each
+ * candidate explicitly instead.
+ *
+ * When a search is split into several tasks, each task collects its own
+ * candidates and the tasks can share their thresholds: a candidate that is
+ * worse than the k-th best candidate of any task cannot be among the k best
+ * candidates overall.
+ */
+class TopCandidates {
+	private final int k;
+	private final PriorityQueue<Entry> heap;
+	private final AtomicLong sharedThreshold;
+	private int order = 0;
+
+	private static class Entry implements Comparable<Entry> {
+		private final Candidate candidate;
+		private final int order;
+
+		public Entry(Candidate candidate, int order) {
+			this.candidate = candidate;
+			this.order = order;
+		}
+
+		/**
+		 * Reverse order, so that the worst candidate is at the head of
+		 * the heap.
+		 */
+		public int compareTo(Entry e) {
+			int c = e.candidate.compareTo(candidate);
+
+			if (c == 0) {
+				c = Integer.compare(e.order, order);
+			}
+
+			return c;
+		}
+	}
+
+	/**
+	 * @param k maximum number of candidates to keep
+	 */
+	public TopCandidates(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * @param k maximum number of candidates to keep
+	 * @param sharedThreshold threshold shared with other tasks as the bits
+	 * of a double (see newSharedThreshold()), or null
+	 */
+	public TopCandidates(int k, AtomicLong sharedThreshold) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("The number of candidates must be greater than 0.");
+		}
+		
+		this.k = k;
+		this.heap = new PriorityQueue<>();
+		this.sharedThreshold = sharedThreshold;
+	}
+
+	/**
+	 * @return a new shared threshold, initially infinity
+	 */
+	public static AtomicLong newSharedThreshold() {
+		return new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+	}
+
+	/**
+	 * @param sharedThreshold shared threshold from newSharedThreshold()
+	 * @return current value of the shared threshold
+	 */
+	public static double getThreshold(AtomicLong sharedThreshold) {
+		return Double.longBitsToDouble(sharedThreshold.get());
+	}
+
+	/**
+	 * Check whether a candidate with the given probability would be kept
+	 * if it were added now.
+	 *
+	 * @param prob -log(prob) of the candidate
+	 * @return true if the candidate would be kept
+	 */
+	public boolean accepts(double prob) {
+		return heap.size() < k || prob < heap.peek().candidate.getProb();
+	}
+
+	/**
+	 * Check whether a candidate with the given probability and order would
+	 * be kept if it were added now.
+	 *
+	 * @param prob -log(prob) of the candidate
+	 * @param order order of the candidate among candidates with the same
+	 * probability
+	 * @return true if the candidate would be kept
+	 */
+	public boolean accepts(double prob, int order) {
+		if (heap.size() < k) {
+			return true;
+		}
+
+		double worst = heap.peek().candidate.getProb();
+		return prob < worst || (prob == worst && order < heap.peek().order);
+	}
+
+	/**
+	 * Add a candidate, dropping the current worst candidate if more than k
+	 * candidates have been found.
+	 *
+	 * @param target candidate correction
+	 * @param prob -log(prob) of the candidate
+	 */
+	public void add(String target, double prob) {
+		add(target, prob, order++);
+	}
+
+	/**
+	 * Add a candidate with an explicit order among the candidates with the
+	 * same probability (e.g., its trie node).
+	 *
+	 * @param target candidate correction
+	 * @param prob -log(prob) of the candidate
+	 * @param order order of the candidate
+	 */
+	public void add(String target, double prob, int order) {
+		if (accepts(prob, order)) {
+			heap.add(new Entry(new Candidate(target, prob), order));
+
+			if (heap.size() > k) {
+				heap.poll();
+			}
+
+			if (sharedThreshold != null && heap.size() == k) {
+				lowerSharedThreshold(heap.peek().candidate.getProb());
+			}
+		}
+	}
+
+	/**
+	 * Add all candidates from another collector, which must have been
+	 * found after all candidates in this collector in trie order.
+	 *
+	 * @param other
+	 */
+	public void addAll(TopCandidates other) {
+		for (Candidate c : other.getCandidates()) {
+			add(c.getTarget(), c.getProb());
+		}
+	}
+
+	private void lowerSharedThreshold(double threshold) {
+		// non-negative doubles have the same order as their bits
+		long bits = Double.doubleToLongBits(threshold);
+		long prev = sharedThreshold.get();
+
+		while (bits < prev && !sharedThreshold.compareAndSet(prev, bits)) {
+			prev = sharedThreshold.get();
+		}
+	}
+
+	/**
+	 * The k-th best -log(prob) found so far by this collector or any task
+	 * sharing its threshold, which is infinity until k candidates have been
+	 * found. Candidates worse than the threshold cannot be among the k best.
+	 *
+	 * @return current k-th best -log(prob)
+	 */
+	public double getThreshold() {
+		double threshold = Double.POSITIVE_INFINITY;
+
+		if (heap.size() == k) {
+			threshold = heap.peek().candidate.getProb();
+		}
+
+		if (sharedThreshold != null) {
+			threshold = Math.min(threshold, getThreshold(sharedThreshold));
+		}
+
+		return threshold;
+	}
+
+	/**
+	 * @return ranked list of the best candidates
+	 */
+	public List<Candidate> getCandidates() {
+		List<Entry> entries = new ArrayList<>(heap);
+		Collections.sort(entries, Collections.reverseOrder());
+
+		List<Candidate> candidates = new ArrayList<>();
+		for (Entry e : entries) {
+			candidates.add(e.candidate);
+		}
+
+		return candidates;
+	}
+}
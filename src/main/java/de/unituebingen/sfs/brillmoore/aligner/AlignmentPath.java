@@ -0,0 +1,150 @@
+package de.unituebingen.sfs.brillmoore.aligner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An alignment of a source and a target string as a sequence of edit
+ * operations, filled by LevenshteinAligner.align(). A path can be reused
+ * for any number of alignments, so aligning does not allocate once the
+ * path's arrays are large enough.
+ *
+ * Each operation aligns the source characters from getSourceStart(i) to
+ * getSourceEnd(i) with the target characters from getTargetStart(i) to
+ * getTargetEnd(i), which are either one character or empty. A character is
+ * a code point, so the offsets of a supplementary character (a surrogate
+ * pair) differ by two and the pair is never split. The characters
+ * aligned by a range of operations are therefore a substring of the source
+ * and a substring of the target.
+ */
+public class AlignmentPath {
+	public static final byte DELETE = 0;
+	public static final byte INSERT = 1;
+	public static final byte MATCH = 2;
+	public static final byte SUB = 3;
+
+	private String source = "";
+	private String target = "";
+	private byte[] ops = new byte[16];
+	private int[] sourceOffsets = new int[17];
+	private int[] targetOffsets = new int[17];
+	private int size = 0;
+
+	/**
+	 * Start a new alignment.
+	 */
+	void reset(String source, String target) {
+		this.source = source;
+		this.target = target;
+		size = 0;
+
+		int capacity = source.length() + target.length();
+		if (capacity > ops.length) {
+			ops = new byte[capacity];
+			sourceOffsets = new int[capacity + 1];
+			targetOffsets = new int[capacity + 1];
+		}
+	}
+
+	/**
+	 * Add an operation, where the operations may be added in reverse order
+	 * (see finish()).
+	 */
+	void add(byte op) {
+		ops[size++] = op;
+	}
+
+	/**
+	 * Complete the alignment after all operations were added, reversing
+	 * them if they were added from the end of the strings.
+	 */
+	void finish(boolean reversed) {
+		if (reversed) {
+			for (int i = 0, j = size - 1; i < j; i++, j--) {
+				byte op = ops[i];
+				ops[i] = ops[j];
+				ops[j] = op;
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			sourceOffsets[i + 1] = sourceOffsets[i] + (ops[i] == INSERT ? 0 : getCharCount(source, sourceOffsets[i]));
+			targetOffsets[i + 1] = targetOffsets[i] + (ops[i] == DELETE ? 0 : getCharCount(target, targetOffsets[i]));
+		}
+	}
+	
+	// number of chars of the code point at the offset
+	private static int getCharCount(String s, int offset) {
+		return Character.charCount(s.codePointAt(offset));
+	}
+
+	/**
+	 * @return number of operations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 * @return DELETE, INSERT, MATCH or SUB
+	 */
+	public byte getOp(int i) {
+		return ops[i];
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public int getSourceStart(int i) {
+		return sourceOffsets[i];
+	}
+
+	public int getSourceEnd(int i) {
+		return sourceOffsets[i + 1];
+	}
+
+	public int getTargetStart(int i) {
+		return targetOffsets[i];
+	}
+
+	public int getTargetEnd(int i) {
+		return targetOffsets[i + 1];
+	}
+
+	/**
+	 * @return number of operations that are not matches
+	 */
+	public int getDistance() {
+		int dist = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (ops[i] != MATCH) {
+				dist++;
+			}
+		}
+
+		return dist;
+	}
+
+	/**
+	 * @return the operations as alignments, where the left-hand side and
+	 * the right-hand side are either an empty string or a single character
+	 * (code point)
+	 */
+	public List<Alignment> getAlignments() {
+		List<Alignment> alignments = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			alignments.add(new Alignment(source.substring(getSourceStart(i), getSourceEnd(i)),
+					target.substring(getTargetStart(i), getTargetEnd(i))));
+		}
+
+		return alignments;
+	}
+}
@@ -84,10 +84,93 @@ public class AlignmentUtils {
 		return combined;
 	}
 	
+	/**
+	 * Generates the same rules as extendAlignments() for the padded
+	 * alignment path in one pass, without creating any lists or strings.
+	 * Since each operation of a path aligns a substring of the source with
+	 * a substring of the target, the rules for the alignments from a to b
+	 * are ranges of the padded source and target. Each range is generated
+	 * once, with the number of times extendAlignments() returns it: once
+	 * for a single alignment and twice for longer ranges, which are both
+	 * left and right extensions.
+	 * 
+	 * @param path aligned source and target (the LHS and RHS of the rules)
+	 * @param window Brill and Moore's N
+	 * @param consumer consumer for the rules
+	 */
+	public static void extendAlignments(AlignmentPath path, int window, RuleConsumer consumer) {
+		String source = padWord(path.getSource());
+		String target = padWord(path.getTarget());
+		int size = path.size() + 4;
+		
+		for (int a = 0; a < size; a++) {
+			int lhsStart = getPaddedSourceOffset(path, a);
+			int rhsStart = getPaddedTargetOffset(path, a);
+			
+			for (int b = a + 1; b <= size && b <= a + window + 1; b++) {
+				int lhsEnd = getPaddedSourceOffset(path, b);
+				int rhsEnd = getPaddedTargetOffset(path, b);
+				int count = b == a + 1 ? 1 : 2;
+				
+				if (lhsStart == lhsEnd && rhsStart == rhsEnd) {
+					consumer.accept(nullString, 0, 1, nullString, 0, 1, count);
+				} else if (lhsStart == lhsEnd) {
+					consumer.accept(nullString, 0, 1, target, rhsStart, rhsEnd, count);
+				} else if (rhsStart == rhsEnd) {
+					consumer.accept(source, lhsStart, lhsEnd, nullString, 0, 1, count);
+				} else {
+					consumer.accept(source, lhsStart, lhsEnd, target, rhsStart, rhsEnd, count);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Offset in the padded source before alignment k of the padded path,
+	 * where the path is padded with two alignments on each side.
+	 */
+	private static int getPaddedSourceOffset(AlignmentPath path, int k) {
+		if (k <= 2) {
+			return k;
+		} else if (k >= path.size() + 2) {
+			return k - path.size() + path.getSource().length();
+		}
+		
+		return 2 + path.getSourceStart(k - 2);
+	}
+	
+	private static int getPaddedTargetOffset(AlignmentPath path, int k) {
+		if (k <= 2) {
+			return k;
+		} else if (k >= path.size() + 2) {
+			return k - path.size() + path.getTarget().length();
+		}
+		
+		return 2 + path.getTargetStart(k - 2);
+	}
+	
 	public static String getReservedChars() {
 		return leftPadding + rightPadding + nullString;
 	}
 	
+	/**
+	 * Check a string for reserved characters without a regular expression.
+	 * 
+	 * @param s
+	 * @return true if s contains one of the reserved characters
+	 */
+	public static boolean containsReservedChars(String s) {
+		String reservedChars = getReservedChars();
+		
+		for (int i = 0; i < reservedChars.length(); i = reservedChars.offsetByCodePoints(i, 1)) {
+			if (s.indexOf(reservedChars.codePointAt(i)) >= 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
 	public static String padWord(String word) {
 		return nullString + leftPadding + word + rightPadding + nullString;
 	}
@@ -1,7 +1,6 @@
 package de.unituebingen.sfs.brillmoore.aligner;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /* Copyright (c) 2012 Kevin L. Stern
@@ -37,6 +36,11 @@ import java.util.List;
  *
  * <p>
  * 
+ * The characters are code points, so a supplementary character is never
+ * split into its surrogates.
+ *
+ * <p>
+ * 
  * This implementation allows the client to specify the costs of the various
  * edit operations.
  * 
@@ -44,13 +48,39 @@ import java.util.List;
  * 
  * The running time of the Levenshtein algorithm is O(n*m) where n is
  * the length of the source string and m is the length of the target string.
- * This implementation consumes O(n*m) space.
+ * This implementation keeps two rows of the distance table and a backtrace
+ * of one byte per cell, which is O(n*m) space. If the backtrace would have
+ * more cells than getMaxBacktraceSize(), every sqrt(n)th row of the distance
+ * table is kept instead and the backtrace is recomputed in blocks of rows
+ * between these rows, which is O(m*sqrt(n)) space and about twice the time.
+ * Both give the same alignment.
+ * 
+ * <p>
+ * 
+ * The tables are reused for all alignments, so an aligner must not be used
+ * by more than one thread at a time.
  * 
  * @author Kevin L. Stern
  * @author Adriane Boyd
  */
 public class LevenshteinAligner {
 	private final int deleteCost, insertCost, replaceCost;
+	private long maxBacktraceSize = 1 << 24;
+	
+	// edit ops for the AlignmentPath operations
+	private static final String[] editOps = { EditOps.delete, EditOps.insert, EditOps.match, EditOps.sub };
+	
+	// tables reused for all alignments
+	private int[] prevRow = new int[0];
+	private int[] row = new int[0];
+	private byte[] backtrace = new byte[0];
+	private int[] checkpoints = new int[0];
+	private int traceI, traceJ;
+	
+	// code points of the current source and target
+	private int[] source = new int[0];
+	private int[] target = new int[0];
+	private int n, m;
 	
 	public class EditOps {
 		public final static String delete = "DEL";
@@ -77,147 +107,264 @@ public class LevenshteinAligner {
 	}
 
 	/**
-	 * Compute the Levenshtein distance between the specified source
-	 * string and the specified target string return a list of EditOp edits.
+	 * Set the largest backtrace (in cells, source length * target length)
+	 * that is kept in full. Longer pairs are aligned with the backtrace
+	 * recomputed in blocks (default 2^24 cells).
+	 * 
+	 * @param maxBacktraceSize maximum number of cells
+	 */
+	public void setMaxBacktraceSize(long maxBacktraceSize) {
+		if (maxBacktraceSize < 1) {
+			throw new IllegalArgumentException("The maximum backtrace size must be at least 1.");
+		}
+		
+		this.maxBacktraceSize = maxBacktraceSize;
+	}
+	
+	public long getMaxBacktraceSize() {
+		return maxBacktraceSize;
+	}
+
+	/**
+	 * Align the source string with the target string, storing the edit
+	 * operations in a path that can be reused for the next alignment.
 	 * 
 	 * @param source source string
 	 * @param target target string
-	 * @return list of EditOp edits
+	 * @param path path for the alignment
 	 */
-	public List<String> getEdits(String source, String target) {	
-		int[][] table = new int[source.length()][target.length()];
-		String[][] backtrace = new String[source.length()][target.length()];
+	public void align(String source, String target, AlignmentPath path) {
+		path.reset(source, target);
+		
+		this.source = getCodePoints(source, this.source);
+		this.target = getCodePoints(target, this.target);
+		n = source.codePointCount(0, source.length());
+		m = target.codePointCount(0, target.length());
 		
 		// special cases if the source or target string is empty
-		if (source.length() == 0 && target.length() == 0) {
-			return new ArrayList<String>();
-		} else if (source.length() == 0) {
-			List<String> edits = new ArrayList<>();
-			
-			for (int i = 0; i < target.length(); i++) {
-				edits.add(EditOps.insert);
+		if (n == 0 || m == 0) {
+			for (int j = 0; j < m; j++) {
+				path.add(AlignmentPath.INSERT);
+			}
+			for (int i = 0; i < n; i++) {
+				path.add(AlignmentPath.DELETE);
 			}
 			
-			return edits;
-		} else if (target.length() == 0) {
-			List<String> edits = new ArrayList<>();
+			path.finish(false);
+			return;
+		}
+		
+		if (row.length < m) {
+			prevRow = new int[m];
+			row = new int[m];
+		}
+		
+		traceI = n - 1;
+		traceJ = m - 1;
+		
+		if ((long) n * m <= maxBacktraceSize) {
+			if (backtrace.length < n * m) {
+				backtrace = new byte[n * m];
+			}
 			
-			for (int i = 0; i < source.length(); i++) {
-				edits.add(EditOps.delete);
+			for (int i = 0; i < n; i++) {
+				computeRow(i, backtrace, i * m);
 			}
 			
-			return edits;
+			trace(0, path);
+		} else {
+			alignInBlocks(path);
 		}
 		
-		if (source.charAt(0) != target.charAt(0)) {
-			table[0][0] = Math.min(replaceCost, deleteCost + insertCost);
-			backtrace[0][0] = EditOps.sub;
-		} else {
-			table[0][0] = 0;
-			backtrace[0][0] = EditOps.match;
+		// the backtrace adds the edits from the end
+		path.finish(true);
+	}
+	
+	/**
+	 * Store the code points of a string in the buffer, which is replaced by
+	 * a larger one if it is too small.
+	 */
+	private static int[] getCodePoints(String s, int[] buffer) {
+		if (buffer.length < s.length()) {
+			buffer = new int[s.length()];
 		}
 		
-		for (int i = 1; i < source.length(); i++) {
-			int deleteDistance = table[i - 1][0] + deleteCost;
-			int insertDistance = (i + 1) * deleteCost + insertCost;
-			int matchDistance = i * deleteCost
-					+ (source.charAt(i) == target.charAt(0) ? 0 : replaceCost);
-			table[i][0] = Math.min(Math.min(deleteDistance, insertDistance),
-					matchDistance);
-			backtrace[i][0] = EditOps.delete;
+		for (int i = 0, j = 0; i < s.length(); j++) {
+			buffer[j] = s.codePointAt(i);
+			i += Character.charCount(buffer[j]);
 		}
 		
-		for (int j = 1; j < target.length(); j++) {
-			int deleteDistance = (j + 1) * insertCost + deleteCost;
-			int insertDistance = table[0][j - 1] + insertCost;
-			int matchDistance = j * insertCost
-					+ (source.charAt(0) == target.charAt(j) ? 0 : replaceCost);
-			table[0][j] = Math.min(Math.min(deleteDistance, insertDistance),
-					matchDistance);
-			backtrace[0][j] = EditOps.insert;
+		return buffer;
+	}
+	
+	/**
+	 * Align with the backtrace recomputed in blocks of rows from every
+	 * blockSize-th row of the distance table.
+	 */
+	private void alignInBlocks(AlignmentPath path) {
+		int blockSize = (int) Math.ceil(Math.sqrt(n));
+		
+		if (checkpoints.length < ((n - 1) / blockSize + 1) * m) {
+			checkpoints = new int[((n - 1) / blockSize + 1) * m];
 		}
-
-		for (int i = 1; i < source.length(); i++) {
-			for (int j = 1; j < target.length(); j++) {
-				int deleteDistance = table[i - 1][j] + deleteCost;
-				int insertDistance = table[i][j - 1] + insertCost;
-				int matchDistance = table[i - 1][j - 1];
-				if (source.charAt(i) != target.charAt(j)) {
+		if (backtrace.length < blockSize * m) {
+			backtrace = new byte[blockSize * m];
+		}
+		
+		for (int i = 0; i < n; i++) {
+			computeRow(i, null, 0);
+			
+			if (i % blockSize == 0) {
+				System.arraycopy(prevRow, 0, checkpoints, i / blockSize * m, m);
+			}
+		}
+		
+		while (traceI >= 0 && traceJ >= 0) {
+			if (traceI == 0) {
+				computeRow(0, backtrace, 0);
+				trace(0, path);
+			} else {
+				// the block with the current row starts after a checkpoint row
+				int checkpoint = (traceI - 1) / blockSize;
+				int firstRow = checkpoint * blockSize + 1;
+				
+				System.arraycopy(checkpoints, checkpoint * m, prevRow, 0, m);
+				for (int i = firstRow; i <= traceI; i++) {
+					computeRow(i, backtrace, (i - firstRow) * m);
+				}
+				
+				trace(firstRow, path);
+			}
+		}
+	}
+	
+	/**
+	 * Compute row i of the distance table from the previous row and store
+	 * the backtrace for the row at the given offset (unless backtrace is
+	 * null). Afterwards the new row is in prevRow.
+	 */
+	private void computeRow(int i, byte[] backtrace, int offset) {
+		int s = source[i];
+		
+		if (i == 0) {
+			if (s != target[0]) {
+				row[0] = Math.min(replaceCost, deleteCost + insertCost);
+				if (backtrace != null) {
+					backtrace[offset] = AlignmentPath.SUB;
+				}
+			} else {
+				row[0] = 0;
+				if (backtrace != null) {
+					backtrace[offset] = AlignmentPath.MATCH;
+				}
+			}
+			
+			for (int j = 1; j < m; j++) {
+				int deleteDistance = (j + 1) * insertCost + deleteCost;
+				int insertDistance = row[j - 1] + insertCost;
+				int matchDistance = j * insertCost
+						+ (s == target[j] ? 0 : replaceCost);
+				row[j] = Math.min(Math.min(deleteDistance, insertDistance),
+						matchDistance);
+				if (backtrace != null) {
+					backtrace[offset + j] = AlignmentPath.INSERT;
+				}
+			}
+		} else {
+			int deleteDistance = prevRow[0] + deleteCost;
+			int insertDistance = (i + 1) * deleteCost + insertCost;
+			int matchDistance = i * deleteCost
+					+ (s == target[0] ? 0 : replaceCost);
+			row[0] = Math.min(Math.min(deleteDistance, insertDistance),
+					matchDistance);
+			if (backtrace != null) {
+				backtrace[offset] = AlignmentPath.DELETE;
+			}
+			
+			for (int j = 1; j < m; j++) {
+				int t = target[j];
+				deleteDistance = prevRow[j] + deleteCost;
+				insertDistance = row[j - 1] + insertCost;
+				matchDistance = prevRow[j - 1];
+				if (s != t) {
 					matchDistance += replaceCost;
 				}
-				table[i][j] = Math.min(Math
+				row[j] = Math.min(Math
 						.min(deleteDistance, insertDistance), matchDistance);
 				
-				
-				if (table[i][j] == deleteDistance) {
-					backtrace[i][j] = EditOps.delete;
-				} else if (table[i][j] == insertDistance) {
-					backtrace[i][j] = EditOps.insert;
-				} else {
-					if (source.charAt(i) == target.charAt(j)) {
-						backtrace[i][j] = EditOps.match;
+				if (backtrace != null) {
+					if (row[j] == deleteDistance) {
+						backtrace[offset + j] = AlignmentPath.DELETE;
+					} else if (row[j] == insertDistance) {
+						backtrace[offset + j] = AlignmentPath.INSERT;
+					} else if (s == t) {
+						backtrace[offset + j] = AlignmentPath.MATCH;
 					} else {
-						backtrace[i][j] = EditOps.sub;
+						backtrace[offset + j] = AlignmentPath.SUB;
 					}
 				}
 			}
 		}
 		
-		// backtrace through matrix
-		List<String> reverseEdits = new ArrayList<>();
-		
-		int posi = source.length() - 1;
-		int posj = target.length() - 1;
-		
-		while(posi >= 0 && posj >= 0) {
-			String edit = backtrace[posi][posj];
-			reverseEdits.add(edit);
-			if (edit == EditOps.match || edit == EditOps.sub) {
-				posi--;
-				posj--;
-			} else if (edit == EditOps.insert) {
-				posj--;
-			} else if (edit == EditOps.delete) {
-				posi--;
+		int[] swap = prevRow;
+		prevRow = row;
+		row = swap;
+	}
+	
+	/**
+	 * Follow the backtrace from (traceI, traceJ) until it leaves the rows
+	 * stored in the backtrace, which start at firstRow.
+	 */
+	private void trace(int firstRow, AlignmentPath path) {
+		while (traceI >= firstRow && traceJ >= 0) {
+			byte edit = backtrace[(traceI - firstRow) * m + traceJ];
+			path.add(edit);
+			if (edit == AlignmentPath.MATCH || edit == AlignmentPath.SUB) {
+				traceI--;
+				traceJ--;
+			} else if (edit == AlignmentPath.INSERT) {
+				traceJ--;
+			} else {
+				traceI--;
 			}
 		}
+	}
+
+	/**
+	 * Compute the Levenshtein distance between the specified source
+	 * string and the specified target string return a list of EditOp edits.
+	 * 
+	 * @param source source string
+	 * @param target target string
+	 * @return list of EditOp edits
+	 */
+	public List<String> getEdits(String source, String target) {
+		AlignmentPath path = new AlignmentPath();
+		align(source, target, path);
+		
+		List<String> edits = new ArrayList<>(path.size());
+		for (int i = 0; i < path.size(); i++) {
+			edits.add(editOps[path.getOp(i)]);
+		}
 		
-		Collections.reverse(reverseEdits);
-		return reverseEdits; // not reversed here!
+		return edits;
 	}
 	
 	/**
 	 * Get the list of alignments between the source and target string, 
 	 * derived from the list of edits from getEdits().  The left-hand side
 	 * and right-side side of each alignment are either an empty string 
-	 * or a single character.
+	 * or a single character (code point).
 	 * 
 	 * @param source
 	 * @param target
 	 * @return list of alignments
 	 */
 	public List<Alignment> getAlignments(String source, String target) {
-		List<String> edits = getEdits(source, target);
-		List<Alignment> alignments = new ArrayList<>();
-		
-		int posi = 0;
-		int posj = 0;
-		for(int i = 0; i < edits.size(); i++) {
-			String edit = edits.get(i);
-			if (edit == EditOps.match || edit == EditOps.sub) {
-				alignments.add(new Alignment(String.valueOf(source.charAt(posi)), String.valueOf(target.charAt(posj))));
-				posi++;
-				posj++;
-			} else if (edit == EditOps.insert) {
-				alignments.add(new Alignment("", String.valueOf(target.charAt(posj))));
-				posj++;
-			} else if (edit == EditOps.delete) {
-				alignments.add(new Alignment(String.valueOf(source.charAt(posi)), ""));
-				posi++;
-			}
-		}
+		AlignmentPath path = new AlignmentPath();
+		align(source, target, path);
 		
-		return alignments;
+		return path.getAlignments();
 	}
 	
 	/**
@@ -228,16 +375,9 @@ public class LevenshteinAligner {
 	 * @return edit distance
 	 */
 	public int getDistance(String source, String target) {
-		List<String> edits = getEdits(source, target);
-		int dist = 0;
-		
-		// edit distance is all non-match alignments
-		for (String edit : edits) {
-			if (edit != EditOps.match) {
-				dist++;
-			}
-		}
+		AlignmentPath path = new AlignmentPath();
+		align(source, target, path);
 		
-		return dist;
+		return path.getDistance();
 	}
 }
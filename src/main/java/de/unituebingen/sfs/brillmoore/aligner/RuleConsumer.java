@@ -0,0 +1,19 @@
+package de.unituebingen.sfs.brillmoore.aligner;
+
+/**
+ * Receives the rules generated by AlignmentUtils.extendAlignments() as
+ * ranges of strings, so that no strings need to be created for rules that
+ * have been seen before.
+ */
+public interface RuleConsumer {
+	/**
+	 * @param lhs string containing the left-hand side
+	 * @param lhsStart start of the left-hand side (inclusive)
+	 * @param lhsEnd end of the left-hand side (exclusive)
+	 * @param rhs string containing the right-hand side
+	 * @param rhsStart start of the right-hand side (inclusive)
+	 * @param rhsEnd end of the right-hand side (exclusive)
+	 * @param count number of times the rule was generated
+	 */
+	void accept(String lhs, int lhsStart, int lhsEnd, String rhs, int rhsStart, int rhsEnd, int count);
+}
@@ -0,0 +1,186 @@
+package de.unituebingen.sfs.brillmoore.errormodel;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import de.unituebingen.sfs.brillmoore.aligner.Alignment;
+
+/**
+ * Counts for alignments (rules lhs -> rhs) from the training data. Each
+ * distinct alignment is interned with a dense int id, in the order the
+ * alignments are first added, and the counts are stored in a primitive
+ * array indexed by id. The ids are looked up in an open addressing hash
+ * table, so counting does not create an Alignment or a boxed count for
+ * each alignment. Alignments can also be added as ranges of strings, so
+ * that strings are only created for new alignments.
+ */
+public class AlignmentCounts {
+	public static final int NONE = -1;
+
+	private String[] lhs = new String[16];
+	private String[] rhs = new String[16];
+	private int[] hashes = new int[16];
+	private int[] counts = new int[16];
+	private int size = 0;
+
+	// slots contain id + 1 or 0 for an empty slot
+	private int[] slots = new int[32];
+
+	public AlignmentCounts() {
+	}
+
+	public AlignmentCounts(Map<Alignment, Integer> alignmentCounts) {
+		for (Map.Entry<Alignment, Integer> a : alignmentCounts.entrySet()) {
+			add(a.getKey().lhs, a.getKey().rhs, a.getValue());
+		}
+	}
+
+	private static int hash(String s, int start, int end) {
+		// the same as String.hashCode() for the substring
+		int h = 0;
+
+		for (int i = start; i < end; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+
+		return h;
+	}
+
+	private static int hash(String lhs, int lhsStart, int lhsEnd, String rhs, int rhsStart, int rhsEnd) {
+		int h = hash(lhs, lhsStart, lhsEnd) * 92821 + hash(rhs, rhsStart, rhsEnd);
+
+		// spread the high bits, since the table size is a power of two
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(String s, String t, int start, int end) {
+		return s.length() == end - start && s.regionMatches(0, t, start, end - start);
+	}
+
+	private int findSlot(String lhs, int lhsStart, int lhsEnd, String rhs, int rhsStart, int rhsEnd, int hash) {
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+
+		while (slots[slot] != 0) {
+			int id = slots[slot] - 1;
+
+			if (hashes[id] == hash && equals(this.lhs[id], lhs, lhsStart, lhsEnd) 
+					&& equals(this.rhs[id], rhs, rhsStart, rhsEnd)) {
+				break;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Add a count for an alignment, interning the alignment if it is new.
+	 *
+	 * @param lhs
+	 * @param rhs
+	 * @param count
+	 * @return id of the alignment
+	 */
+	public int add(String lhs, String rhs, int count) {
+		return add(lhs, 0, lhs.length(), rhs, 0, rhs.length(), count);
+	}
+
+	/**
+	 * Add a count for an alignment of the substrings lhs[lhsStart, lhsEnd)
+	 * and rhs[rhsStart, rhsEnd), interning the alignment if it is new.
+	 *
+	 * @return id of the alignment
+	 */
+	public int add(String lhs, int lhsStart, int lhsEnd, String rhs, int rhsStart, int rhsEnd, int count) {
+		int hash = hash(lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd);
+		int slot = findSlot(lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd, hash);
+
+		if (slots[slot] != 0) {
+			int id = slots[slot] - 1;
+			counts[id] += count;
+			return id;
+		}
+
+		if (size == this.lhs.length) {
+			int capacity = 2 * size;
+			this.lhs = Arrays.copyOf(this.lhs, capacity);
+			this.rhs = Arrays.copyOf(this.rhs, capacity);
+			hashes = Arrays.copyOf(hashes, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+
+		int id = size++;
+		this.lhs[id] = lhs.substring(lhsStart, lhsEnd);
+		this.rhs[id] = rhs.substring(rhsStart, rhsEnd);
+		hashes[id] = hash;
+		counts[id] = count;
+		slots[slot] = id + 1;
+
+		// keep the table at most half full
+		if (2 * size > slots.length) {
+			rehash();
+		}
+
+		return id;
+	}
+
+	private void rehash() {
+		slots = new int[2 * slots.length];
+		int mask = slots.length - 1;
+
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			slots[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Add all counts from other counts, interning new alignments in the
+	 * order of their ids in the other counts.
+	 *
+	 * @param other
+	 */
+	public void addAll(AlignmentCounts other) {
+		for (int id = 0; id < other.size; id++) {
+			add(other.lhs[id], other.rhs[id], other.counts[id]);
+		}
+	}
+
+	/**
+	 * @param lhs
+	 * @param rhs
+	 * @return id of the alignment or NONE if it was never added
+	 */
+	public int getId(String lhs, String rhs) {
+		int slot = findSlot(lhs, 0, lhs.length(), rhs, 0, rhs.length(), 
+				hash(lhs, 0, lhs.length(), rhs, 0, rhs.length()));
+
+		return slots[slot] - 1;
+	}
+
+	/**
+	 * @return number of distinct alignments
+	 */
+	public int size() {
+		return size;
+	}
+
+	public String getLhs(int id) {
+		return lhs[id];
+	}
+
+	public String getRhs(int id) {
+		return rhs[id];
+	}
+
+	public int getCount(int id) {
+		return counts[id];
+	}
+}
@@ -0,0 +1,772 @@
+package de.unituebingen.sfs.brillmoore.errormodel;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.unituebingen.sfs.brillmoore.aligner.AlignmentUtils;
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+import de.unituebingen.sfs.brillmoore.trie.Alphabet;
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
+
+/**
+ * An error model compiled into a flat state table for the edit distance
+ * calculation. The rules alpha -> beta are stored as a trie of reversed
+ * betas (RHS), where each beta has a trie of the reversed alphas (LHS) with
+ * the cost -log(prob) of each rule. The nodes of all tries are numbered as
+ * states in a single table, so that following a symbol from a state is a
+ * constant number of array lookups.
+ *
+ * The symbols are the characters in the rules (in the order of the model's
+ * alphabet) and one symbol for all other characters. The table is a double
+ * array: the child of a state for a symbol is the state base[state] +
+ * symbol, if check[] of that state is the base of the parent. The bases are
+ * chosen so that the children of different states fill each other's gaps,
+ * so the table has about one slot per state and grows with the number of
+ * rules and not with the number of states times the number of symbols.
+ * Missing transitions lead to the DEAD state, which only leads to itself
+ * and has an infinite cost, so no lookup needs to check for missing nodes.
+ *
+ * The tables are primitive arrays on the heap, which are small enough to be
+ * copied from a model file (see read()). A compiled model is never
+ * modified: update() adds the changed states and their siblings as new
+ * states after the end of the tables, which it shares with the original
+ * model (see StateTable).
+ */
+public class CompiledErrorModel {
+	public static final int DEAD = 0;
+
+	// check[] of the roots (which have no parent) and of free slots
+	private static final int NO_PARENT = -1;
+	private static final int FREE = -2;
+	// beta root of a compiled model
+	private static final int BETA_ROOT = 1;
+	// updates add states to the tables until they are this many times as
+	// large as the compiled model
+	private static final int MAX_GROWTH = 4;
+
+	private final Alphabet alphabet;
+	private final int unmatchedSymbol;
+	private final int nullSymbol;
+	private final int width;
+	private final int[] bases;
+	private final int[] checks;
+	private final double[] costs;
+	private final int[] alphaRoots;
+	private final int betaRoot;
+	// slots used by this model and by the model it was compiled as
+	private final int size;
+	private final int compiledSize;
+	// end of the slots used by any model sharing the tables
+	private final TableEnd end;
+	private int maxLhsLength = 0;
+
+	/**
+	 * Compile an error model. The symbols are the ids of the characters in
+	 * the rules and the reserved characters.
+	 *
+	 * @param model error model
+	 */
+	public CompiledErrorModel(ErrorModel model) {
+		List<String> strings = new ArrayList<>();
+		for (int id = 0; id < model.size(); id++) {
+			strings.add(model.getLhs(id));
+			strings.add(model.getRhs(id));
+		}
+		strings.add(AlignmentUtils.getReservedChars());
+		alphabet = new Alphabet(strings);
+
+		unmatchedSymbol = alphabet.size();
+		nullSymbol = getSymbol(AlignmentUtils.nullString.codePointAt(0));
+		width = unmatchedSymbol + 1;
+
+		// collect the entries of the alpha tries for each RHS, with the
+		// LHS and RHS encoded and reversed
+		Map<String, SortedMap<int[], Double>> alphaEntries = new HashMap<>();
+
+		for (int id = 0; id < model.size(); id++) {
+			int[] lhs = alphabet.encode(StringUtils.reverse(model.getLhs(id)));
+			String rhs = model.getRhs(id);
+
+			maxLhsLength = Math.max(maxLhsLength, lhs.length);
+
+			if (!alphaEntries.containsKey(rhs)) {
+				alphaEntries.put(rhs, new TreeMap<int[], Double>(CompactTrie.KEY_ORDER));
+			}
+
+			alphaEntries.get(rhs).put(lhs, -Math.log(model.getProb(id)));
+		}
+
+		SortedMap<int[], Double> betaEntries = new TreeMap<>(CompactTrie.KEY_ORDER);
+		for (String rhs : alphaEntries.keySet()) {
+			betaEntries.put(alphabet.encode(StringUtils.reverse(rhs)), 0.0);
+		}
+
+		CompactTrie betaTrie = new CompactTrie(betaEntries);
+		CompactTrie[] alphaTries = new CompactTrie[betaTrie.size()];
+		long numStates = BETA_ROOT + betaTrie.size();
+
+		for (Map.Entry<String, SortedMap<int[], Double>> a : alphaEntries.entrySet()) {
+			int betaTrieNode = betaTrie.getNode(alphabet.encode(StringUtils.reverse(a.getKey())));
+			alphaTries[betaTrieNode] = new CompactTrie(a.getValue());
+			numStates += alphaTries[betaTrieNode].size();
+		}
+
+		// place the nodes of the beta trie, followed by the nodes of each
+		// alpha trie
+		StateTable table = new StateTable(numStates + width);
+		table.addRoot(DEAD);
+		table.addRoot(BETA_ROOT);
+		int[] betaStates = table.addTrie(betaTrie, BETA_ROOT, false);
+
+		for (int betaTrieNode = 0; betaTrieNode < alphaTries.length; betaTrieNode++) {
+			if (alphaTries[betaTrieNode] != null) {
+				int alphaRoot = table.addRoot(table.findFree());
+				table.alphaRoots[betaStates[betaTrieNode]] = alphaRoot;
+				table.addTrie(alphaTries[betaTrieNode], alphaRoot, true);
+			}
+		}
+
+		bases = table.bases;
+		checks = table.checks;
+		costs = table.costs;
+		alphaRoots = table.alphaRoots;
+		betaRoot = BETA_ROOT;
+		size = table.size;
+		compiledSize = table.size;
+		end = new TableEnd(table.size);
+	}
+
+	private CompiledErrorModel(Alphabet alphabet, int maxLhsLength, int betaRoot, int size, int compiledSize,
+			int[] bases, int[] checks, double[] costs, int[] alphaRoots, TableEnd end) {
+		this.alphabet = alphabet;
+		this.unmatchedSymbol = alphabet.size();
+		this.nullSymbol = alphabet.getId(AlignmentUtils.nullString.codePointAt(0));
+		this.width = unmatchedSymbol + 1;
+		this.maxLhsLength = maxLhsLength;
+		this.betaRoot = betaRoot;
+		this.size = size;
+		this.compiledSize = compiledSize;
+		this.bases = bases;
+		this.checks = checks;
+		this.costs = costs;
+		this.alphaRoots = alphaRoots;
+		this.end = end;
+	}
+
+	/**
+	 * Read a model written by write(). The state tables are copied onto the
+	 * heap, since the lookups in arrays are faster than in buffers.
+	 *
+	 * @param in
+	 * @return compiled error model
+	 * @throws ParseException if the file is truncated
+	 */
+	public static CompiledErrorModel read(BinaryReader in) throws ParseException {
+		Alphabet alphabet = Alphabet.read(in);
+		int maxLhsLength = in.readInt();
+		int size = in.readInt();
+
+		if (size < alphabet.size() + 1) {
+			throw new ParseException("The error model has an invalid number of states: " + size, 0);
+		}
+
+		in.align(8);
+		double[] costs = in.readDoubleArray(size);
+		int[] bases = in.readIntArray(size);
+		int[] checks = in.readIntArray(size);
+		int[] alphaRoots = in.readIntArray(size);
+
+		return new CompiledErrorModel(alphabet, maxLhsLength, BETA_ROOT, size, size, bases, checks, costs, alphaRoots,
+				new TableEnd(size));
+	}
+
+	/**
+	 * Write the model, with the state tables aligned for read(). An updated
+	 * model is compacted first, so that only its own states are written.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(BinaryWriter out) throws IOException {
+		if (size > compiledSize) {
+			compact().write(out);
+			return;
+		}
+
+		alphabet.write(out);
+		out.writeInt(maxLhsLength);
+		out.writeInt(size);
+
+		out.align(8);
+		out.writeDoubles(DoubleBuffer.wrap(costs, 0, size));
+		out.writeInts(IntBuffer.wrap(bases, 0, size));
+		out.writeInts(IntBuffer.wrap(checks, 0, size));
+		out.writeInts(IntBuffer.wrap(alphaRoots, 0, size));
+	}
+
+	/**
+	 * Create a copy of the model with the costs of the given rules of an
+	 * error model replaced or added, e.g., the rules returned by
+	 * ErrorModel.addAlignmentCounts().
+	 * The copy shares the tables of the model and only adds the states on
+	 * the paths to the given rules (and their siblings) after the end of the
+	 * tables, so an update takes time proportional to the number of rules
+	 * and not to the size of the model. The copy has the same costs as a
+	 * model compiled from the updated error model, but not the same state
+	 * numbers. Once the updates have made the tables MAX_GROWTH times as
+	 * large as the compiled model, the reachable states are copied into new
+	 * tables (see compact()).
+	 *
+	 * @param model error model
+	 * @param ids ids of the rules in the error model
+	 * @return updated copy or null if a rule contains a character that is
+	 * not in the model's alphabet, in which case the model has to be
+	 * compiled again
+	 */
+	public CompiledErrorModel update(ErrorModel model, int[] ids) {
+		int[][] lhss = new int[ids.length][];
+		int[][] rhss = new int[ids.length][];
+
+		for (int r = 0; r < ids.length; r++) {
+			lhss[r] = alphabet.encode(model.getLhs(ids[r]));
+			rhss[r] = alphabet.encode(model.getRhs(ids[r]));
+
+			for (int symbol : lhss[r]) {
+				if (symbol == Alphabet.UNKNOWN) {
+					return null;
+				}
+			}
+			for (int symbol : rhss[r]) {
+				if (symbol == Alphabet.UNKNOWN) {
+					return null;
+				}
+			}
+		}
+
+		synchronized (end) {
+			if (end.slots >= (long) MAX_GROWTH * compiledSize) {
+				return compact().update(model, ids);
+			}
+
+			StateTable table = new StateTable(this);
+			int newBetaRoot = table.copyRoot(betaRoot);
+			int newMaxLhsLength = maxLhsLength;
+
+			try {
+				for (int r = 0; r < ids.length; r++) {
+					int[] lhs = lhss[r];
+					int[] rhs = rhss[r];
+
+					int betaState = newBetaRoot;
+					for (int i = rhs.length - 1; i >= 0; i--) {
+						betaState = table.addChild(betaState, rhs[i]);
+					}
+
+					// copying the root may grow the tables
+					int alphaRoot = table.copyRoot(table.alphaRoots[betaState]);
+					table.alphaRoots[betaState] = alphaRoot;
+
+					int alphaState = alphaRoot;
+					for (int i = lhs.length - 1; i >= 0; i--) {
+						alphaState = table.addChild(alphaState, lhs[i]);
+					}
+
+					table.costs[alphaState] = -Math.log(model.getProb(ids[r]));
+					newMaxLhsLength = Math.max(newMaxLhsLength, lhs.length);
+				}
+			} finally {
+				// the new slots in the shared tables are not free for
+				// other updates of the model, even if this one fails or
+				// grows the tables
+				end.slots = Math.max(end.slots, Math.min(table.size, bases.length));
+			}
+
+			return new CompiledErrorModel(alphabet, newMaxLhsLength, newBetaRoot, table.size, compiledSize,
+					table.bases, table.checks, table.costs, table.alphaRoots,
+					table.bases == bases ? end : new TableEnd(table.size));
+		}
+	}
+
+	/**
+	 * Copy the states of the model into new tables, without the states of
+	 * the other models that share the tables.
+	 *
+	 * @return copy with the same costs
+	 */
+	private CompiledErrorModel compact() {
+		StateTable table = new StateTable((long) compiledSize + width);
+		table.addReachable(this);
+
+		return new CompiledErrorModel(alphabet, maxLhsLength, BETA_ROOT, table.size, table.size,
+				table.bases, table.checks, table.costs, table.alphaRoots, new TableEnd(table.size));
+	}
+
+	/**
+	 * The end of the slots used by the models that share a set of tables.
+	 * Updates add their states after it.
+	 */
+	private static class TableEnd {
+		int slots;
+
+		TableEnd(int slots) {
+			this.slots = slots;
+		}
+	}
+
+	/**
+	 * A growable double array for building and updating the state tables.
+	 * The table is always at least width slots longer than the largest
+	 * base, so that a lookup never needs a bounds check.
+	 *
+	 * Each base is used by a single state and its copies, so the check of a
+	 * child, which is the base of its parent, identifies the parent.
+	 * An update shares the tables of the model and never changes the slots
+	 * and bases before the end of the tables (start). To change a state, it
+	 * copies its parent's children to a new base after the end, and so on
+	 * up to a copy of the root. The copies keep the bases of the states, so
+	 * they share their children. The original model never sees the new
+	 * states, since their checks are new bases.
+	 */
+	private class StateTable {
+		int[] bases;
+		int[] checks;
+		double[] costs;
+		int[] alphaRoots;
+		// slots before start belong to other models
+		final int start;
+		// bases in use (from start)
+		final BitSet usedBases = new BitSet();
+		// slots in use and the first slot that might be free
+		int size = 0;
+		int firstFree = 0;
+		// labels of the children of a state
+		final int[] labels = new int[width];
+
+		StateTable(long capacity) {
+			bases = new int[0];
+			checks = new int[0];
+			costs = new double[0];
+			alphaRoots = new int[0];
+			start = 0;
+			grow(capacity);
+		}
+
+		/**
+		 * Share the tables of a model. Only the slots after the end of the
+		 * tables are changed, as long as the tables do not grow.
+		 */
+		StateTable(CompiledErrorModel model) {
+			bases = model.bases;
+			checks = model.checks;
+			costs = model.costs;
+			alphaRoots = model.alphaRoots;
+			start = model.end.slots;
+			size = start;
+			firstFree = start;
+		}
+
+		private void grow(long capacity) {
+			if (capacity > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The error model needs more than 2^31 states.");
+			}
+
+			if (capacity > checks.length) {
+				int prevLength = checks.length;
+				int newLength = (int) Math.min(Math.max(capacity, 2L * prevLength), Integer.MAX_VALUE - 8);
+
+				bases = Arrays.copyOf(bases, newLength);
+				checks = Arrays.copyOf(checks, newLength);
+				costs = Arrays.copyOf(costs, newLength);
+				alphaRoots = Arrays.copyOf(alphaRoots, newLength);
+				Arrays.fill(checks, prevLength, newLength, FREE);
+				Arrays.fill(costs, prevLength, newLength, Double.POSITIVE_INFINITY);
+			}
+		}
+
+		private boolean isFree(int slot) {
+			return slot >= checks.length || (slot >= start && checks[slot] == FREE);
+		}
+
+		/**
+		 * Mark a slot as used by a child of the parent base (or a root).
+		 */
+		private void use(int slot, int parentBase) {
+			grow((long) slot + width);
+			checks[slot] = parentBase;
+			size = Math.max(size, slot + width);
+
+			while (!isFree(firstFree)) {
+				firstFree++;
+			}
+		}
+
+		/**
+		 * Free a slot of a state that was moved.
+		 */
+		private void free(int slot) {
+			bases[slot] = 0;
+			checks[slot] = FREE;
+			costs[slot] = Double.POSITIVE_INFINITY;
+			alphaRoots[slot] = DEAD;
+		}
+
+		private void setBase(int state, int base) {
+			grow((long) base + width);
+			bases[state] = base;
+			usedBases.set(base - start);
+			size = Math.max(size, base + width);
+		}
+
+		/**
+		 * @return a free slot
+		 */
+		int findFree() {
+			int slot = firstFree;
+
+			while (!isFree(slot)) {
+				slot++;
+			}
+
+			return slot;
+		}
+
+		/**
+		 * Find an unused base (other than 0, the base of the states without
+		 * children), for which the slots for all labels are free.
+		 *
+		 * @param labels sorted labels
+		 * @param n number of labels
+		 * @return base
+		 */
+		private int findBase(int[] labels, int n) {
+			// free slots far before the end rarely fit, so they are skipped
+			for (int slot = Math.max(Math.max(firstFree, size - 2 * width), Math.max(start, 1) + labels[0]); ; slot++) {
+				int base = slot - labels[0];
+
+				if (isFree(slot) && !usedBases.get(base - start)) {
+					int i = 1;
+
+					while (i < n && isFree(base + labels[i])) {
+						i++;
+					}
+
+					if (i == n) {
+						return base;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Add a root, which is not the child of any state.
+		 *
+		 * @param slot free slot
+		 * @return state
+		 */
+		int addRoot(int slot) {
+			use(slot, NO_PARENT);
+
+			return slot;
+		}
+
+		/**
+		 * Copy a root of another model (or add a root for DEAD), whose
+		 * children can then be changed.
+		 *
+		 * @return root after start
+		 */
+		int copyRoot(int root) {
+			if (root >= start) {
+				return root;
+			}
+
+			int slot = addRoot(findFree());
+			if (root != DEAD) {
+				bases[slot] = bases[root];
+				costs[slot] = costs[root];
+				alphaRoots[slot] = alphaRoots[root];
+			}
+
+			return slot;
+		}
+
+		/**
+		 * Add the nodes of a trie, whose root is the given state, and the
+		 * costs of its terminal nodes.
+		 *
+		 * @return state of each node
+		 */
+		int[] addTrie(CompactTrie trie, int root, boolean withCosts) {
+			int[] states = new int[trie.size()];
+			states[CompactTrie.ROOT] = root;
+
+			// the parent of a node comes before it, so its state is known
+			for (int node = 0; node < trie.size(); node++) {
+				int n = 0;
+				for (int child = trie.getFirstChild(node); child != CompactTrie.NONE; child = trie.getNextSibling(child)) {
+					labels[n++] = trie.getLabel(child);
+				}
+
+				if (n > 0) {
+					int base = findBase(labels, n);
+					setBase(states[node], base);
+
+					for (int child = trie.getFirstChild(node); child != CompactTrie.NONE; child = trie.getNextSibling(child)) {
+						states[child] = base + trie.getLabel(child);
+						use(states[child], base);
+					}
+				}
+
+				if (withCosts && trie.isTerminal(node)) {
+					costs[states[node]] = trie.getValue(node);
+				}
+			}
+
+			return states;
+		}
+
+		/**
+		 * Add the states that are reachable from the beta root of a model,
+		 * first the beta trie and then the alpha tries, as for a compiled
+		 * model.
+		 */
+		void addReachable(CompiledErrorModel model) {
+			// pairs of a state of the model and its new state
+			int[] queue = new int[2 * model.size];
+			int head = 0;
+			int tail = 0;
+			// pairs of an alpha root of the model and the new beta state
+			int[] alphaTries = new int[2 * model.size];
+			int numAlphaTries = 0;
+			int nextAlphaTrie = 0;
+
+			addRoot(DEAD);
+			queue[tail++] = model.betaRoot;
+			queue[tail++] = addRoot(BETA_ROOT);
+
+			while (head < tail || nextAlphaTrie < numAlphaTries) {
+				if (head == tail) {
+					int alphaRoot = addRoot(findFree());
+					alphaRoots[alphaTries[nextAlphaTrie + 1]] = alphaRoot;
+					queue[tail++] = alphaTries[nextAlphaTrie];
+					queue[tail++] = alphaRoot;
+					nextAlphaTrie += 2;
+				}
+
+				int from = queue[head++];
+				int state = queue[head++];
+				int base = model.bases[from];
+				int n = 0;
+
+				for (int label = 0; base != 0 && label < width; label++) {
+					if (model.checks[base + label] == base) {
+						labels[n++] = label;
+					}
+				}
+
+				if (n > 0) {
+					int newBase = findBase(labels, n);
+					setBase(state, newBase);
+
+					for (int i = 0; i < n; i++) {
+						use(newBase + labels[i], newBase);
+						queue[tail++] = base + labels[i];
+						queue[tail++] = newBase + labels[i];
+					}
+				}
+
+				costs[state] = model.costs[from];
+				if (model.alphaRoots[from] != DEAD) {
+					alphaTries[numAlphaTries++] = model.alphaRoots[from];
+					alphaTries[numAlphaTries++] = state;
+				}
+			}
+		}
+
+		/**
+		 * Follow a transition from a state after start, adding a new state
+		 * if there is none. If the children of the state belong to another
+		 * model or the slot for the new state is not free, the children are
+		 * copied (or moved, if they are after start) to a new base.
+		 *
+		 * @return child after start
+		 */
+		int addChild(int state, int symbol) {
+			int base = bases[state];
+			int slot = base + symbol;
+
+			if (base >= start && checks[slot] == base) {
+				return slot;
+			}
+
+			if (base >= start && isFree(slot)) {
+				use(slot, base);
+				return slot;
+			}
+
+			int n = 0;
+
+			for (int label = 0; label < width; label++) {
+				if (label == symbol || checks[base + label] == base) {
+					labels[n++] = label;
+				}
+			}
+
+			int newBase = findBase(labels, n);
+			setBase(state, newBase);
+
+			for (int i = 0; i < n; i++) {
+				int from = base + labels[i];
+				int to = newBase + labels[i];
+				use(to, newBase);
+
+				if (checks[from] == base) {
+					bases[to] = bases[from];
+					costs[to] = costs[from];
+					alphaRoots[to] = alphaRoots[from];
+
+					if (from >= start) {
+						free(from);
+					}
+				}
+			}
+
+			return newBase + symbol;
+		}
+	}
+
+	/**
+	 * @return alphabet for the characters in the rules
+	 */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	/**
+	 * Map a code point to the symbol used in the state table. Code points
+	 * that do not occur in any rule are mapped to a symbol that only leads
+	 * to the DEAD state.
+	 *
+	 * @param codePoint
+	 * @return symbol
+	 */
+	public int getSymbol(int codePoint) {
+		int id = alphabet.getId(codePoint);
+
+		return id == Alphabet.UNKNOWN ? unmatchedSymbol : id;
+	}
+
+	/**
+	 * @param s string
+	 * @return symbols for the code points in the string
+	 */
+	public int[] getSymbols(String s) {
+		int[] symbols = alphabet.encode(s);
+
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] == Alphabet.UNKNOWN) {
+				symbols[i] = unmatchedSymbol;
+			}
+		}
+
+		return symbols;
+	}
+
+	/**
+	 * @return symbol for the null string, which stands for an empty alpha
+	 * or beta
+	 */
+	public int getNullSymbol() {
+		return nullSymbol;
+	}
+
+	/**
+	 * @param state beta or alpha state
+	 * @param symbol
+	 * @return next state or DEAD
+	 */
+	public int next(int state, int symbol) {
+		int base = bases[state];
+		int child = base + symbol;
+
+		return checks[child] == base ? child : DEAD;
+	}
+
+	/**
+	 * @return root state of the beta trie
+	 */
+	public int getBetaRoot() {
+		return betaRoot;
+	}
+
+	/**
+	 * @param betaState beta state
+	 * @return root state of the alpha trie for the beta or DEAD
+	 */
+	public int getAlphaRoot(int betaState) {
+		return alphaRoots[betaState];
+	}
+
+	/**
+	 * @param alphaState alpha state
+	 * @return -log(prob) of the rule ending in the state or infinity
+	 */
+	public double getCost(int alphaState) {
+		return costs[alphaState];
+	}
+
+	/**
+	 * Look up the cost -log(prob) of the rule lhs[0..lhsLength) ->
+	 * rhs[0..rhsLength), where an empty string is the null string.
+	 *
+	 * @param lhs encoded lhs
+	 * @param lhsLength length of the lhs prefix
+	 * @param rhs encoded rhs
+	 * @param rhsLength length of the rhs prefix
+	 * @return -log(prob) or infinity if there is no such rule
+	 */
+	public double getCost(int[] lhs, int lhsLength, int[] rhs, int rhsLength) {
+		int betaState = getReversedState(betaRoot, rhs, rhsLength);
+
+		return costs[getReversedState(alphaRoots[betaState], lhs, lhsLength)];
+	}
+
+	private int getReversedState(int state, int[] key, int length) {
+		if (length == 0) {
+			return next(state, nullSymbol);
+		}
+
+		for (int i = length - 1; i >= 0; i--) {
+			state = next(state, key[i]);
+		}
+
+		return state;
+	}
+
+	/**
+	 * @return length of the longest LHS (alpha) of any rule
+	 */
+	public int getMaxLhsLength() {
+		return maxLhsLength;
+	}
+
+	/**
+	 * @return number of slots in the state table, including free slots
+	 */
+	public int size() {
+		return size;
+	}
+}
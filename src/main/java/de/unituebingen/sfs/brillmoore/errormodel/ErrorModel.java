@@ -1,17 +1,40 @@
 package de.unituebingen.sfs.brillmoore.errormodel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.unituebingen.sfs.brillmoore.aligner.Alignment;
 
 public class ErrorModel {
 
-	private Map<Alignment, Integer> alignmentCounts;
+	private AlignmentCounts alignmentCounts;
 	private double m;
-	private Map<Alignment, Double> alignmentProbs;
+	private double[] alignmentProbs = new double[0];
+	
+	// each LHS has a dense id with its total count and a linked list of its
+	// alignments, so the probabilities for an LHS can be recalculated when
+	// counts are added
+	private Map<String, Integer> lhsIds = new HashMap<>();
+	private long[] lhsCounts = new long[0];
+	private int[] firstWithLhs = new int[0];
+	private int[] alignmentLhs = new int[0];
+	private int[] nextWithLhs = new int[0];
 	
 	public ErrorModel(Map<Alignment, Integer> alignmentCounts, double m) {
+		this(new AlignmentCounts(alignmentCounts), m);
+	}
+	
+	/**
+	 * Calculate the model from alignment counts. The model keeps the counts
+	 * and adds to them in addAlignmentCounts().
+	 * 
+	 * @param alignmentCounts alignment counts
+	 * @param m minimum probability for alpha -> alpha
+	 */
+	public ErrorModel(AlignmentCounts alignmentCounts, double m) {
 		this.alignmentCounts = alignmentCounts;
 		this.m = m;
 		
@@ -19,45 +42,147 @@ public class ErrorModel {
 	}
 	
 	private void calculateModel() {
-		alignmentProbs = new HashMap<>();
+		grow();
 		
-		Map<String, Integer> lhsCounts = new HashMap<>();
-		for (Map.Entry<Alignment, Integer> a : alignmentCounts.entrySet()) {
+		for (int id = 0; id < alignmentCounts.size(); id++) {
 			// only expand alignments where alpha != beta if length > 1
-			/*if (a.getKey().lhs.length() > 1 && a.getKey().lhs.equals(a.getKey().rhs)) {
+			/*if (alignmentCounts.getLhs(id).length() > 1 && alignmentCounts.getLhs(id).equals(alignmentCounts.getRhs(id))) {
 				continue;
 			}*/
 			
-			if (lhsCounts.containsKey(a.getKey().lhs)) {
-				lhsCounts.put(a.getKey().lhs, lhsCounts.get(a.getKey().lhs) + a.getValue());
-			} else {
-				lhsCounts.put(a.getKey().lhs, a.getValue());
-			}
+			addLhs(id);
+			lhsCounts[alignmentLhs[id]] += alignmentCounts.getCount(id);
 		}
 		
-		for (Map.Entry<Alignment, Integer> a : alignmentCounts.entrySet()) {
-			// only expand alignments where alpha != beta
-			/*if (a.getKey().lhs.length() > 1 && a.getKey().lhs.equals(a.getKey().rhs)) {
-				continue;
-			}*/
+		for (int id = 0; id < alignmentCounts.size(); id++) {
+			alignmentProbs[id] = calculateProb(id);
+		}
+	}
+	
+	private void grow() {
+		int size = alignmentCounts.size();
+		
+		if (size > alignmentProbs.length) {
+			int capacity = Math.max(size, 2 * alignmentProbs.length);
+			alignmentProbs = Arrays.copyOf(alignmentProbs, capacity);
+			alignmentLhs = Arrays.copyOf(alignmentLhs, capacity);
+			nextWithLhs = Arrays.copyOf(nextWithLhs, capacity);
+		}
+	}
+	
+	/**
+	 * Add a new alignment to the list for its LHS.
+	 */
+	private void addLhs(int id) {
+		String lhs = alignmentCounts.getLhs(id);
+		Integer lhsId = lhsIds.get(lhs);
+		
+		if (lhsId == null) {
+			lhsId = lhsIds.size();
+			lhsIds.put(lhs, lhsId);
 			
-			double prob = (1 - m) * (double) a.getValue() / (double) lhsCounts.get(a.getKey().lhs);
-
-			if (a.getKey().lhs.equals(a.getKey().rhs)) {
-				prob += m;
+			if (lhsId == lhsCounts.length) {
+				int capacity = Math.max(16, 2 * lhsCounts.length);
+				lhsCounts = Arrays.copyOf(lhsCounts, capacity);
+				firstWithLhs = Arrays.copyOf(firstWithLhs, capacity);
 			}
+			firstWithLhs[lhsId] = AlignmentCounts.NONE;
+		}
+		
+		alignmentLhs[id] = lhsId;
+		nextWithLhs[id] = firstWithLhs[lhsId];
+		firstWithLhs[lhsId] = id;
+	}
+	
+	private double calculateProb(int id) {
+		double prob = (1 - m) * (double) alignmentCounts.getCount(id) / (double) lhsCounts[alignmentLhs[id]];
 
-			alignmentProbs.put(a.getKey(), prob);
+		if (alignmentCounts.getLhs(id).equals(alignmentCounts.getRhs(id))) {
+			prob += m;
+		}
+		
+		return prob;
+	}
+	
+	/**
+	 * Add alignment counts from new training data to the model. Since the
+	 * probability of an alignment only depends on its count and the total
+	 * count of its LHS, only the probabilities of alignments with the same
+	 * LHS as a new alignment are recalculated. The resulting model is the
+	 * same as a model calculated from the combined counts.
+	 * 
+	 * @param newCounts counts for the new alignments
+	 * @return ids of the alignments whose probabilities were recalculated
+	 */
+	public int[] addAlignmentCounts(AlignmentCounts newCounts) {
+		int prevSize = alignmentCounts.size();
+		List<Integer> changedLhs = new ArrayList<>();
+		boolean[] changed = new boolean[lhsCounts.length + newCounts.size()];
+		
+		for (int i = 0; i < newCounts.size(); i++) {
+			int id = alignmentCounts.add(newCounts.getLhs(i), newCounts.getRhs(i), newCounts.getCount(i));
+			
+			if (id >= prevSize) {
+				grow();
+				addLhs(id);
+			}
+			
+			int lhsId = alignmentLhs[id];
+			lhsCounts[lhsId] += newCounts.getCount(i);
+			if (!changed[lhsId]) {
+				changed[lhsId] = true;
+				changedLhs.add(lhsId);
+			}
 		}
+		
+		List<Integer> changedIds = new ArrayList<>();
+		for (int lhsId : changedLhs) {
+			for (int id = firstWithLhs[lhsId]; id != AlignmentCounts.NONE; id = nextWithLhs[id]) {
+				alignmentProbs[id] = calculateProb(id);
+				changedIds.add(id);
+			}
+		}
+		
+		return changedIds.stream().mapToInt(Integer::intValue).toArray();
+	}
+	
+	/**
+	 * @return number of alignments, which have the ids 0 to size() - 1
+	 */
+	public int size() {
+		return alignmentCounts.size();
+	}
+	
+	public String getLhs(int id) {
+		return alignmentCounts.getLhs(id);
 	}
 	
+	public String getRhs(int id) {
+		return alignmentCounts.getRhs(id);
+	}
+	
+	public double getProb(int id) {
+		return alignmentProbs[id];
+	}
+	
+	/**
+	 * @return a map from all alignments to their probabilities
+	 */
 	public Map<Alignment, Double> getModel() {
-		return alignmentProbs;
+		Map<Alignment, Double> model = new HashMap<>();
+		
+		for (int id = 0; id < size(); id++) {
+			model.put(new Alignment(getLhs(id), getRhs(id)), alignmentProbs[id]);
+		}
+		
+		return model;
 	}
 	
 	public double getProb(Alignment a) {
-		if (alignmentProbs.containsKey(a)) {
-			return alignmentProbs.get(a);
+		int id = alignmentCounts.getId(a.lhs, a.rhs);
+		
+		if (id != AlignmentCounts.NONE) {
+			return alignmentProbs[id];
 		}
 		
 		return 0.0;
@@ -66,8 +191,8 @@ public class ErrorModel {
 	public String toString() {
 		StringBuilder o = new StringBuilder();
 		
-		for (Map.Entry<Alignment, Double> a : alignmentProbs.entrySet()) {
-			o.append(a.getKey() + "\t" + a.getValue() + "\n"); 
+		for (int id = 0; id < size(); id++) {
+			o.append(getLhs(id) + " -> " + getRhs(id) + "\t" + alignmentProbs[id] + "\n"); 
 		}
 		
 		return o.toString();
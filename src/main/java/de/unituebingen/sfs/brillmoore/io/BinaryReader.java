@@ -0,0 +1,157 @@
+package de.unituebingen.sfs.brillmoore.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+
+/**
+ * Reads a binary file written by BinaryWriter. The file is memory-mapped,
+ * so arrays are returned as views into the mapped file, which are not
+ * copied onto the heap and which are shared through the page cache by all
+ * processes that map the same file. Files are limited to 2 GB.
+ */
+public class BinaryReader {
+	private final ByteBuffer buffer;
+
+	/**
+	 * Map a file read-only.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public BinaryReader(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int readInt() throws ParseException {
+		try {
+			return buffer.getInt();
+		} catch (BufferUnderflowException e) {
+			throw truncated();
+		}
+	}
+
+	public double readDouble() throws ParseException {
+		try {
+			return buffer.getDouble();
+		} catch (BufferUnderflowException e) {
+			throw truncated();
+		}
+	}
+
+	/**
+	 * Read a small array onto the heap.
+	 *
+	 * @param n length
+	 * @return array
+	 * @throws ParseException if the file is too short
+	 */
+	public int[] readIntArray(int n) throws ParseException {
+		if (n < 0 || 4L * n > buffer.remaining()) {
+			throw truncated();
+		}
+
+		int[] a = new int[n];
+
+		try {
+			buffer.asIntBuffer().get(a);
+		} catch (BufferUnderflowException e) {
+			throw truncated();
+		}
+		skip(4L * n);
+
+		return a;
+	}
+
+	/**
+	 * Read a small array onto the heap.
+	 *
+	 * @param n length
+	 * @return array
+	 * @throws ParseException if the file is too short
+	 */
+	public double[] readDoubleArray(int n) throws ParseException {
+		if (n < 0 || 8L * n > buffer.remaining()) {
+			throw truncated();
+		}
+
+		double[] a = new double[n];
+
+		try {
+			buffer.asDoubleBuffer().get(a);
+		} catch (BufferUnderflowException e) {
+			throw truncated();
+		}
+		skip(8L * n);
+
+		return a;
+	}
+
+	/**
+	 * @param n length
+	 * @return view of the next n ints
+	 * @throws ParseException if the file is too short
+	 */
+	public IntBuffer readInts(int n) throws ParseException {
+		return slice(4L * n).asIntBuffer();
+	}
+
+	/**
+	 * @param n length
+	 * @return view of the next n doubles
+	 * @throws ParseException if the file is too short
+	 */
+	public DoubleBuffer readDoubles(int n) throws ParseException {
+		return slice(8L * n).asDoubleBuffer();
+	}
+
+	/**
+	 * @param n length
+	 * @return view of the next n bytes, where each byte is a boolean
+	 * @throws ParseException if the file is too short
+	 */
+	public ByteBuffer readBooleans(int n) throws ParseException {
+		return slice(n);
+	}
+
+	private ByteBuffer slice(long n) throws ParseException {
+		ByteBuffer view = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		skip(n);
+		view.limit((int) n);
+
+		return view;
+	}
+
+	private void skip(long n) throws ParseException {
+		if (n < 0 || n > buffer.remaining()) {
+			throw truncated();
+		}
+
+		buffer.position(buffer.position() + (int) n);
+	}
+
+	/**
+	 * Skip the padding up to a multiple of n bytes.
+	 *
+	 * @param n
+	 * @throws ParseException if the file is too short
+	 */
+	public void align(int n) throws ParseException {
+		int padding = (n - buffer.position() % n) % n;
+		skip(padding);
+	}
+
+	private ParseException truncated() {
+		return new ParseException("The binary file is truncated.", buffer.position());
+	}
+}
@@ -0,0 +1,109 @@
+package de.unituebingen.sfs.brillmoore.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes little-endian primitives and arrays to a binary file that can be
+ * read back with a memory-mapped BinaryReader. Arrays can be aligned, so
+ * that the reader can use them in place.
+ */
+public class BinaryWriter implements Closeable {
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	private long position = 0;
+
+	/**
+	 * Create or overwrite a file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public BinaryWriter(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private void ensureRemaining(int n) throws IOException {
+		if (buffer.remaining() < n) {
+			flush();
+		}
+	}
+
+	public void writeInt(int i) throws IOException {
+		ensureRemaining(4);
+		buffer.putInt(i);
+		position += 4;
+	}
+
+	public void writeDouble(double d) throws IOException {
+		ensureRemaining(8);
+		buffer.putDouble(d);
+		position += 8;
+	}
+
+	public void writeBoolean(boolean b) throws IOException {
+		ensureRemaining(1);
+		buffer.put((byte) (b ? 1 : 0));
+		position += 1;
+	}
+
+	public void writeInts(int[] a) throws IOException {
+		for (int i : a) {
+			writeInt(i);
+		}
+	}
+
+	public void writeInts(IntBuffer a) throws IOException {
+		for (int i = 0; i < a.limit(); i++) {
+			writeInt(a.get(i));
+		}
+	}
+
+	public void writeDoubles(double[] a) throws IOException {
+		for (double d : a) {
+			writeDouble(d);
+		}
+	}
+
+	public void writeDoubles(DoubleBuffer a) throws IOException {
+		for (int i = 0; i < a.limit(); i++) {
+			writeDouble(a.get(i));
+		}
+	}
+
+	/**
+	 * Pad the file with zeros up to a multiple of n bytes.
+	 *
+	 * @param n
+	 * @throws IOException
+	 */
+	public void align(int n) throws IOException {
+		while (position % n != 0) {
+			writeBoolean(false);
+		}
+	}
+
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package de.unituebingen.sfs.brillmoore.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets: each
+ * power of two is split into four buckets, so a percentile is reported
+ * with an error of at most 25% and recording a duration only adds to one
+ * striped counter.
+ *
+ * Durations can be recorded by any number of threads. The counts are not
+ * read atomically, so a percentile read while durations are recorded may
+ * include some of them and not others.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = getBucket(Long.MAX_VALUE) + 1;
+
+	private final LongAdder[] counts = new LongAdder[NUM_BUCKETS];
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	private static int getBucket(long nanos) {
+		// the smallest values have their own buckets, larger values are
+		// bucketed by the highest bit and the sub-bucket bits below it
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+
+		int exp = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long getBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exp = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exp - SUB_BUCKET_BITS);
+
+		return lower + (1L << (exp - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * @param nanos duration (negative durations are recorded as 0)
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+
+		counts[getBucket(nanos)].increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * @return number of recorded durations
+	 */
+	public long getCount() {
+		long count = 0;
+
+		for (LongAdder c : counts) {
+			count += c.sum();
+		}
+
+		return count;
+	}
+
+	public double getMeanNanos() {
+		long count = getCount();
+
+		return count == 0 ? 0.0 : (double) sum.sum() / count;
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * @param p percentile from 0 to 100
+	 * @return upper bound of the bucket that contains the percentile, at
+	 * most the maximum duration, or 0 if no durations were recorded
+	 */
+	public long getPercentileNanos(double p) {
+		if (p < 0 || p > 100) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+		}
+
+		long[] bucketCounts = new long[counts.length];
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			bucketCounts[i] = counts[i].sum();
+			count += bucketCounts[i];
+		}
+
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seen += bucketCounts[i];
+			if (seen >= rank) {
+				return Math.min(getBucketUpperBound(i), getMaxNanos());
+			}
+		}
+
+		return getMaxNanos();
+	}
+
+	/**
+	 * Remove all recorded durations.
+	 */
+	public void reset() {
+		for (LongAdder c : counts) {
+			c.reset();
+		}
+		sum.reset();
+		max.reset();
+	}
+}
@@ -0,0 +1,85 @@
+package de.unituebingen.sfs.brillmoore.metrics;
+
+/**
+ * The work done for one query of the spell checker. For a query answered
+ * from the result cache, all work counts are 0.
+ */
+public class QueryStats {
+	private final String misspelling;
+	private final int k;
+	private final boolean cached;
+	private final long nodesVisited;
+	private final long cellsComputed;
+	private final long ruleLookups;
+	private final long candidatesScored;
+	private final int candidatesReturned;
+	private final long nanos;
+
+	/**
+	 * @param misspelling misspelling
+	 * @param k number of candidates requested
+	 * @param cached whether the result was found in the result cache
+	 * @param nodesVisited dictionary trie nodes visited
+	 * @param cellsComputed edit distance table cells computed
+	 * @param ruleLookups rule costs looked up in the error model
+	 * @param candidatesScored dictionary words scored
+	 * @param candidatesReturned candidates returned
+	 * @param nanos wall time
+	 */
+	public QueryStats(String misspelling, int k, boolean cached, long nodesVisited, long cellsComputed,
+			long ruleLookups, long candidatesScored, int candidatesReturned, long nanos) {
+		this.misspelling = misspelling;
+		this.k = k;
+		this.cached = cached;
+		this.nodesVisited = nodesVisited;
+		this.cellsComputed = cellsComputed;
+		this.ruleLookups = ruleLookups;
+		this.candidatesScored = candidatesScored;
+		this.candidatesReturned = candidatesReturned;
+		this.nanos = nanos;
+	}
+
+	public String getMisspelling() {
+		return misspelling;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public boolean isCached() {
+		return cached;
+	}
+
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	public long getCellsComputed() {
+		return cellsComputed;
+	}
+
+	public long getRuleLookups() {
+		return ruleLookups;
+	}
+
+	public long getCandidatesScored() {
+		return candidatesScored;
+	}
+
+	public int getCandidatesReturned() {
+		return candidatesReturned;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryStats [misspelling=" + misspelling + ", k=" + k + ", cached=" + cached + ", nodesVisited=" +
+				nodesVisited + ", cellsComputed=" + cellsComputed + ", ruleLookups=" + ruleLookups +
+				", candidatesScored=" + candidatesScored + ", candidatesReturned=" + candidatesReturned +
+				", nanos=" + nanos + "]";
+	}
+}
@@ -0,0 +1,207 @@
+package de.unituebingen.sfs.brillmoore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Aggregated metrics for a spell checker: the work done by all queries
+ * (see QueryStats), a histogram of the query latencies and the time spent
+ * in each training phase. The counters are striped (LongAdder), so
+ * recording a query from many threads does not contend on a shared
+ * counter.
+ *
+ * The metrics can be registered as an MBean, e.g.:
+ *
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(spellchecker.getMetrics(),
+ *         new ObjectName(SpellCheckerMetrics.OBJECT_NAME));
+ * </pre>
+ */
+public class SpellCheckerMetrics implements SpellCheckerMetricsMBean {
+	public static final String OBJECT_NAME = "de.unituebingen.sfs.brillmoore:type=SpellChecker";
+
+	public enum TrainingPhase {
+		// aligning the training pairs
+		ALIGNMENT,
+		// expanding the alignments into rules and counting them
+		EXPANSION,
+		// calculating the rule probabilities
+		ERROR_MODEL,
+		// compiling the rules into the state tables of the rule tries
+		RULE_TRIES,
+		// compiling dictionaries into dictionary tries
+		DICTIONARY_TRIE
+	}
+
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder cachedQueries = new LongAdder();
+	private final LongAdder nodesVisited = new LongAdder();
+	private final LongAdder cellsComputed = new LongAdder();
+	private final LongAdder ruleLookups = new LongAdder();
+	private final LongAdder candidatesScored = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder[] trainingNanos = new LongAdder[TrainingPhase.values().length];
+	private volatile Consumer<QueryStats> queryListener = null;
+
+	public SpellCheckerMetrics() {
+		for (int i = 0; i < trainingNanos.length; i++) {
+			trainingNanos[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Add the work done for a query and pass it on to the query listener.
+	 *
+	 * @param query
+	 */
+	public void record(QueryStats query) {
+		queries.increment();
+		if (query.isCached()) {
+			cachedQueries.increment();
+		}
+		nodesVisited.add(query.getNodesVisited());
+		cellsComputed.add(query.getCellsComputed());
+		ruleLookups.add(query.getRuleLookups());
+		candidatesScored.add(query.getCandidatesScored());
+		latency.record(query.getNanos());
+
+		Consumer<QueryStats> listener = queryListener;
+		if (listener != null) {
+			listener.accept(query);
+		}
+	}
+
+	/**
+	 * Add time spent in a training phase.
+	 *
+	 * @param phase
+	 * @param nanos
+	 */
+	public void addTrainingTime(TrainingPhase phase, long nanos) {
+		trainingNanos[phase.ordinal()].add(nanos);
+	}
+
+	/**
+	 * Set a listener that is called with the stats of each query, e.g., to
+	 * log slow queries. The listener is called on the thread that ran the
+	 * query, so it has to be thread-safe and fast.
+	 *
+	 * @param listener listener or null
+	 */
+	public void setQueryListener(Consumer<QueryStats> listener) {
+		queryListener = listener;
+	}
+
+	/**
+	 * @return histogram of the query latencies
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @param phase
+	 * @return total time spent in the training phase in nanoseconds
+	 */
+	public long getTrainingNanos(TrainingPhase phase) {
+		return trainingNanos[phase.ordinal()].sum();
+	}
+
+	@Override
+	public long getQueries() {
+		return queries.sum();
+	}
+
+	@Override
+	public long getCachedQueries() {
+		return cachedQueries.sum();
+	}
+
+	@Override
+	public long getNodesVisited() {
+		return nodesVisited.sum();
+	}
+
+	@Override
+	public long getCellsComputed() {
+		return cellsComputed.sum();
+	}
+
+	@Override
+	public long getRuleLookups() {
+		return ruleLookups.sum();
+	}
+
+	@Override
+	public long getCandidatesScored() {
+		return candidatesScored.sum();
+	}
+
+	private static double toMillis(double nanos) {
+		return nanos / 1e6;
+	}
+
+	@Override
+	public double getMeanLatencyMillis() {
+		return toMillis(latency.getMeanNanos());
+	}
+
+	@Override
+	public double getMedianLatencyMillis() {
+		return toMillis(latency.getPercentileNanos(50));
+	}
+
+	@Override
+	public double getLatency95Millis() {
+		return toMillis(latency.getPercentileNanos(95));
+	}
+
+	@Override
+	public double getLatency99Millis() {
+		return toMillis(latency.getPercentileNanos(99));
+	}
+
+	@Override
+	public double getMaxLatencyMillis() {
+		return toMillis(latency.getMaxNanos());
+	}
+
+	@Override
+	public double getAlignmentMillis() {
+		return toMillis(getTrainingNanos(TrainingPhase.ALIGNMENT));
+	}
+
+	@Override
+	public double getExpansionMillis() {
+		return toMillis(getTrainingNanos(TrainingPhase.EXPANSION));
+	}
+
+	@Override
+	public double getErrorModelMillis() {
+		return toMillis(getTrainingNanos(TrainingPhase.ERROR_MODEL));
+	}
+
+	@Override
+	public double getRuleTriesMillis() {
+		return toMillis(getTrainingNanos(TrainingPhase.RULE_TRIES));
+	}
+
+	@Override
+	public double getDictionaryTrieMillis() {
+		return toMillis(getTrainingNanos(TrainingPhase.DICTIONARY_TRIE));
+	}
+
+	/**
+	 * Reset the query counters and latencies. The training times are kept.
+	 */
+	@Override
+	public void reset() {
+		queries.reset();
+		cachedQueries.reset();
+		nodesVisited.reset();
+		cellsComputed.reset();
+		ruleLookups.reset();
+		candidatesScored.reset();
+		latency.reset();
+	}
+}
@@ -0,0 +1,41 @@
+package de.unituebingen.sfs.brillmoore.metrics;
+
+/**
+ * JMX view of SpellCheckerMetrics. Latencies and training times are in
+ * milliseconds.
+ */
+public interface SpellCheckerMetricsMBean {
+	long getQueries();
+
+	long getCachedQueries();
+
+	long getNodesVisited();
+
+	long getCellsComputed();
+
+	long getRuleLookups();
+
+	long getCandidatesScored();
+
+	double getMeanLatencyMillis();
+
+	double getMedianLatencyMillis();
+
+	double getLatency95Millis();
+
+	double getLatency99Millis();
+
+	double getMaxLatencyMillis();
+
+	double getAlignmentMillis();
+
+	double getExpansionMillis();
+
+	double getErrorModelMillis();
+
+	double getRuleTriesMillis();
+
+	double getDictionaryTrieMillis();
+
+	void reset();
+}
@@ -0,0 +1,149 @@
+package de.unituebingen.sfs.brillmoore.trie;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+
+/**
+ * Maps the code points in a set of strings to dense int ids, so that
+ * strings can be encoded as int arrays for tries and lookup tables.
+ * Supplementary characters (surrogate pairs) are mapped to a single id.
+ *
+ * The ids are assigned in code point order, so sorting encoded strings
+ * gives the same order as sorting the strings by code point.
+ */
+public class Alphabet {
+	public static final int UNKNOWN = -1;
+
+	private final Map<Integer, Integer> ids;
+	private final int[] codePoints;
+
+	/**
+	 * Create an alphabet for all code points in the strings.
+	 *
+	 * @param strings
+	 */
+	public Alphabet(Collection<String> strings) {
+		TreeSet<Integer> sortedCodePoints = new TreeSet<>();
+		for (String s : strings) {
+			for (int i = 0; i < s.length(); i = s.offsetByCodePoints(i, 1)) {
+				sortedCodePoints.add(s.codePointAt(i));
+			}
+		}
+
+		codePoints = new int[sortedCodePoints.size()];
+		ids = new HashMap<>();
+		int id = 0;
+		for (int c : sortedCodePoints) {
+			codePoints[id] = c;
+			ids.put(c, id);
+			id++;
+		}
+	}
+
+	private Alphabet(int[] codePoints) {
+		this.codePoints = codePoints;
+
+		ids = new HashMap<>();
+		for (int i = 0; i < codePoints.length; i++) {
+			ids.put(codePoints[i], i);
+		}
+	}
+
+	/**
+	 * Read an alphabet written by write().
+	 *
+	 * @param in
+	 * @return alphabet
+	 * @throws ParseException if the file is truncated
+	 */
+	public static Alphabet read(BinaryReader in) throws ParseException {
+		int size = in.readInt();
+		return new Alphabet(in.readIntArray(size));
+	}
+
+	/**
+	 * Write the code points in id order.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(BinaryWriter out) throws IOException {
+		out.writeInt(codePoints.length);
+		out.writeInts(codePoints);
+	}
+
+	/**
+	 * @return number of ids
+	 */
+	public int size() {
+		return codePoints.length;
+	}
+
+	/**
+	 * @param codePoint
+	 * @return id for the code point or UNKNOWN
+	 */
+	public int getId(int codePoint) {
+		Integer id = ids.get(codePoint);
+
+		if (id == null) {
+			return UNKNOWN;
+		}
+
+		return id;
+	}
+
+	/**
+	 * @param id
+	 * @return code point for the id
+	 */
+	public int getCodePoint(int id) {
+		return codePoints[id];
+	}
+
+	/**
+	 * Encode a string as an array of ids, with UNKNOWN for code points that
+	 * are not in the alphabet.
+	 *
+	 * @param s
+	 * @return ids
+	 */
+	public int[] encode(String s) {
+		int[] encoded = new int[s.codePointCount(0, s.length())];
+
+		for (int i = 0, j = 0; i < s.length(); i = s.offsetByCodePoints(i, 1), j++) {
+			encoded[j] = getId(s.codePointAt(i));
+		}
+
+		return encoded;
+	}
+
+	/**
+	 * Decode a range of an array of ids.
+	 *
+	 * @param encoded ids
+	 * @param start start (inclusive)
+	 * @param end end (exclusive)
+	 * @return string
+	 */
+	public String decode(int[] encoded, int start, int end) {
+		StringBuilder s = new StringBuilder(end - start);
+
+		for (int i = start; i < end; i++) {
+			s.appendCodePoint(codePoints[encoded[i]]);
+		}
+
+		return s.toString();
+	}
+
+	public String decode(int[] encoded) {
+		return decode(encoded, 0, encoded.length);
+	}
+}
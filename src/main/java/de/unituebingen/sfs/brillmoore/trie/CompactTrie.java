@@ -0,0 +1,313 @@
+package de.unituebingen.sfs.brillmoore.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+
+/**
+ * An immutable trie stored in primitive arrays. The keys are strings
+ * encoded as arrays of symbol ids (see Alphabet). Nodes are identified by
+ * int ids and numbered in depth-first order, with the children of each
+ * node in symbol order, so the nodes in a subtree are numbered
+ * consecutively and a depth-first traversal visits the keys in sorted
+ * order.
+ *
+ * Each node stores the symbol on the edge from its parent, its parent
+ * and its next sibling. The first child of a node is always the next node
+ * in depth-first order, so it does not need to be stored. Terminal nodes
+ * (the ends of keys) store a double value.
+ *
+ * The arrays are primitive buffers, which are either on the heap for a
+ * newly built trie or views into a memory-mapped file (see read()).
+ */
+public class CompactTrie {
+	public static final int ROOT = 0;
+	public static final int NONE = -1;
+
+	/**
+	 * Lexicographic order of keys, which has to be used to sort the
+	 * entries for the constructor.
+	 */
+	public static final Comparator<int[]> KEY_ORDER = new Comparator<int[]>() {
+		public int compare(int[] a, int[] b) {
+			int n = Math.min(a.length, b.length);
+
+			for (int i = 0; i < n; i++) {
+				if (a[i] != b[i]) {
+					return Integer.compare(a[i], b[i]);
+				}
+			}
+
+			return Integer.compare(a.length, b.length);
+		}
+	};
+
+	private final IntBuffer labels;
+	private final IntBuffer parents;
+	private final IntBuffer nextSiblings;
+	private final ByteBuffer terminals;
+	private final DoubleBuffer values;
+
+	/**
+	 * Build a trie from keys and values sorted in KEY_ORDER.
+	 *
+	 * @param entries keys and values
+	 */
+	public CompactTrie(SortedMap<int[], Double> entries) {
+		// count the nodes: each key adds one node for each symbol
+		// after the prefix it shares with the previous key
+		int size = 1;
+		int[] prev = new int[0];
+		for (int[] key : entries.keySet()) {
+			size += key.length - commonPrefixLength(prev, key);
+			prev = key;
+		}
+
+		int[] labels = new int[size];
+		int[] parents = new int[size];
+		int[] nextSiblings = new int[size];
+		byte[] terminals = new byte[size];
+		double[] values = new double[size];
+
+		parents[ROOT] = NONE;
+		Arrays.fill(nextSiblings, NONE);
+		Arrays.fill(values, Double.NaN);
+
+		// path[d] is the node at depth d on the path to the previous key
+		int[] path = new int[maxLength(entries) + 1];
+		path[0] = ROOT;
+		prev = new int[0];
+		int node = 0;
+
+		for (Map.Entry<int[], Double> e : entries.entrySet()) {
+			int[] key = e.getKey();
+			int depth = commonPrefixLength(prev, key);
+
+			for (int d = depth; d < key.length; d++) {
+				node++;
+				labels[node] = key[d];
+				parents[node] = path[d];
+
+				// the node on the previous path at this depth is the
+				// previous sibling of the new node unless the paths
+				// diverged above it
+				if (d == depth && d < prev.length) {
+					nextSiblings[path[d + 1]] = node;
+				}
+
+				path[d + 1] = node;
+			}
+
+			terminals[path[key.length]] = 1;
+			values[path[key.length]] = e.getValue();
+			prev = key;
+		}
+
+		this.labels = IntBuffer.wrap(labels);
+		this.parents = IntBuffer.wrap(parents);
+		this.nextSiblings = IntBuffer.wrap(nextSiblings);
+		this.terminals = ByteBuffer.wrap(terminals);
+		this.values = DoubleBuffer.wrap(values);
+	}
+
+	private CompactTrie(IntBuffer labels, IntBuffer parents, IntBuffer nextSiblings, 
+			ByteBuffer terminals, DoubleBuffer values) {
+		this.labels = labels;
+		this.parents = parents;
+		this.nextSiblings = nextSiblings;
+		this.terminals = terminals;
+		this.values = values;
+	}
+
+	/**
+	 * Read a trie written by write(). The arrays are used in place without
+	 * copying them onto the heap.
+	 *
+	 * @param in
+	 * @return trie
+	 * @throws ParseException if the file is truncated
+	 */
+	public static CompactTrie read(BinaryReader in) throws ParseException {
+		int size = in.readInt();
+
+		in.align(8);
+		DoubleBuffer values = in.readDoubles(size);
+		IntBuffer labels = in.readInts(size);
+		IntBuffer parents = in.readInts(size);
+		IntBuffer nextSiblings = in.readInts(size);
+		ByteBuffer terminals = in.readBooleans(size);
+
+		return new CompactTrie(labels, parents, nextSiblings, terminals, values);
+	}
+
+	/**
+	 * Write the trie, with the arrays aligned for read().
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(BinaryWriter out) throws IOException {
+		out.writeInt(size());
+
+		out.align(8);
+		out.writeDoubles(values);
+		out.writeInts(labels);
+		out.writeInts(parents);
+		out.writeInts(nextSiblings);
+		for (int node = 0; node < size(); node++) {
+			out.writeBoolean(isTerminal(node));
+		}
+	}
+
+	private static int commonPrefixLength(int[] a, int[] b) {
+		int n = Math.min(a.length, b.length);
+		int i = 0;
+
+		while (i < n && a[i] == b[i]) {
+			i++;
+		}
+
+		return i;
+	}
+
+	private static int maxLength(SortedMap<int[], Double> entries) {
+		int max = 0;
+
+		for (int[] key : entries.keySet()) {
+			max = Math.max(max, key.length);
+		}
+
+		return max;
+	}
+
+	/**
+	 * @return number of nodes, including the root
+	 */
+	public int size() {
+		return labels.limit();
+	}
+
+	/**
+	 * @param node
+	 * @return symbol on the edge from the parent to the node
+	 */
+	public int getLabel(int node) {
+		return labels.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return parent of the node or NONE for the root
+	 */
+	public int getParent(int node) {
+		return parents.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return first child of the node or NONE if the node has no children
+	 */
+	public int getFirstChild(int node) {
+		int child = node + 1;
+
+		if (child < labels.limit() && parents.get(child) == node) {
+			return child;
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * @param node
+	 * @return next sibling of the node or NONE if it is the last child
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings.get(node);
+	}
+
+	/**
+	 * Find the child of a node with the given symbol.
+	 *
+	 * @param node
+	 * @param symbol
+	 * @return child or NONE
+	 */
+	public int getChild(int node, int symbol) {
+		// children are in symbol order
+		for (int child = getFirstChild(node); child != NONE; child = nextSiblings.get(child)) {
+			int label = labels.get(child);
+
+			if (label == symbol) {
+				return child;
+			} else if (label > symbol) {
+				break;
+			}
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * Find the node for a key, following the symbols of the key from
+	 * the given node.
+	 *
+	 * @param node start node
+	 * @param key
+	 * @return node or NONE
+	 */
+	public int getNode(int node, int[] key) {
+		for (int i = 0; i < key.length && node != NONE; i++) {
+			node = getChild(node, key[i]);
+		}
+
+		return node;
+	}
+
+	public int getNode(int[] key) {
+		return getNode(ROOT, key);
+	}
+
+	/**
+	 * @param node
+	 * @return true if a key ends at the node
+	 */
+	public boolean isTerminal(int node) {
+		return terminals.get(node) != 0;
+	}
+
+	/**
+	 * @param node
+	 * @return value for the key ending at the node or NaN if the node is
+	 * not terminal
+	 */
+	public double getValue(int node) {
+		return values.get(node);
+	}
+
+	/**
+	 * @param node
+	 * @return key for the node (the symbols on the path from the root)
+	 */
+	public int[] getKey(int node) {
+		int depth = 0;
+		for (int n = node; n != ROOT; n = parents.get(n)) {
+			depth++;
+		}
+
+		int[] key = new int[depth];
+		for (int n = node; n != ROOT; n = parents.get(n)) {
+			key[--depth] = labels.get(n);
+		}
+
+		return key;
+	}
+}
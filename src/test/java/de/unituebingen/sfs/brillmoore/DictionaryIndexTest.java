@@ -0,0 +1,82 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
+
+public class DictionaryIndexTest {
+
+	private List<String> getWords(DictionaryIndex index) {
+		List<String> words = new ArrayList<>();
+		CompactTrie trie = index.getTrie();
+
+		for (int node = 0; node < trie.size(); node++) {
+			if (trie.isTerminal(node)) {
+				Assert.assertEquals(index.getWordId(node), words.size());
+				words.add(index.getWord(node));
+			} else {
+				Assert.assertEquals(index.getWordId(node), -1);
+			}
+		}
+
+		return words;
+	}
+
+	@Test
+	public void buildIndex() throws ParseException {
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("Arzt", 0.5);
+		dict.put("April", 0.25);
+		dict.put("Ärzte", 0.125);
+
+		DictionaryIndex index = new DictionaryIndex(dict);
+
+		Assert.assertSame(index.getDictionary(), dict);
+		Assert.assertEquals(index.getNumWords(), 3);
+		Assert.assertEquals(index.getMaxDepth(), "Ärzte".length() + 4);
+		Assert.assertEquals(getWords(index).toString(), "[April, Arzt, Ärzte]");
+
+		// the root has the best prior of all words
+		Assert.assertEquals(index.getPrior(CompactTrie.ROOT), -Math.log(0.5));
+	}
+
+	@Test
+	public void saveAndLoadIndex() throws ParseException, IOException {
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+
+		DictionaryIndex index = new DictionaryIndex(dict);
+		File indexFile = File.createTempFile("brillmoore", ".index");
+		indexFile.deleteOnExit();
+		index.save(indexFile);
+		DictionaryIndex loaded = new DictionaryIndex(indexFile);
+
+		Assert.assertNull(loaded.getDictionary());
+		Assert.assertEquals(loaded.getNumWords(), index.getNumWords());
+		Assert.assertEquals(loaded.getMaxDepth(), index.getMaxDepth());
+		Assert.assertEquals(loaded.getTrie().size(), index.getTrie().size());
+		Assert.assertEquals(getWords(loaded), getWords(index));
+		for (int node = 0; node < index.getTrie().size(); node++) {
+			Assert.assertEquals(loaded.getPrior(node), index.getPrior(node));
+		}
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void loadTruncatedIndex() throws ParseException, IOException {
+		File indexFile = File.createTempFile("brillmoore", ".index");
+		indexFile.deleteOnExit();
+
+		new DictionaryIndex(indexFile);
+	}
+}
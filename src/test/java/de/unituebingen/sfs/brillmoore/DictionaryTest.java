@@ -0,0 +1,85 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DictionaryTest {
+
+	@Test
+	public void copyWords() throws ParseException {
+		Map<String, Double> words = new HashMap<>();
+		words.put("April", 0.5);
+		words.put("Arzt", 0.25);
+
+		Dictionary dictionary = new Dictionary(words);
+		words.put("Altstadt", 0.25);
+
+		Assert.assertEquals(dictionary.size(), 2);
+		Assert.assertTrue(dictionary.contains("April"));
+		Assert.assertFalse(dictionary.contains("Altstadt"));
+		Assert.assertEquals(dictionary.getProb("Arzt"), 0.25);
+		Assert.assertNull(dictionary.getProb("Altstadt"));
+		Assert.assertEquals(dictionary.getIndex().getNumWords(), 2);
+		Assert.assertSame(dictionary.getIndex().getDictionary(), dictionary.getWords());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void immutableWords() throws ParseException {
+		Map<String, Double> words = new HashMap<>();
+		words.put("April", 1.0);
+
+		new Dictionary(words).getWords().put("Arzt", 1.0);
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void reservedChars() throws ParseException {
+		Map<String, Double> words = new HashMap<>();
+		words.put("April", 1.0);
+		words.put("Ar∅zt", 1.0);
+
+		new Dictionary(words);
+	}
+
+	@Test
+	public void getRankedCandidates() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+
+		Map<String, Double> words = new HashMap<>();
+		words.put("April", 0.5);
+		words.put("Arzt", 0.25);
+		words.put("Altstadt", 0.25);
+		Dictionary dictionary = new Dictionary(words);
+
+		SpellChecker fromMap = new SpellChecker(trainMisspellings, words, 3, 0.8);
+		SpellChecker fromDictionary = new SpellChecker(trainMisspellings, dictionary, 3, 0.8);
+
+		Map<String, Double> otherWords = new HashMap<>();
+		otherWords.put("Abril", 1.0);
+		Dictionary other = new Dictionary(otherWords);
+
+		List<Candidate> expected = fromMap.getRankedCandidates("Abril", 3);
+		List<List<Candidate>> actual = new ArrayList<>();
+		actual.add(fromDictionary.getRankedCandidates("Abril", 3));
+		actual.add(fromMap.getRankedCandidates("Abril", dictionary, 3));
+		actual.add(fromMap.getRankedCandidates("Abril", dictionary.getWords(), 3));
+
+		for (List<Candidate> candidates : actual) {
+			Assert.assertEquals(candidates.size(), expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(candidates.get(i).getTarget(), expected.get(i).getTarget());
+				Assert.assertEquals(candidates.get(i).getProb(), expected.get(i).getProb(), 1e-12);
+			}
+		}
+
+		Assert.assertEquals(fromDictionary.getRankedCandidates("Abril", other, 3).get(0).getTarget(), "Abril");
+		fromDictionary.setDictionary(other);
+		Assert.assertEquals(fromDictionary.getRankedCandidates("Abril", 3).get(0).getTarget(), "Abril");
+	}
+}
@@ -0,0 +1,111 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class SpellCheckerServerTest {
+	private SpellCheckerServer server;
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void startServer() throws ParseException, IOException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("April", 1.0);
+		dict.put("Arzt", 1.0);
+		dict.put("Altstadt", 1.0);
+
+		executor = Executors.newFixedThreadPool(2);
+		server = new SpellCheckerServer(new SpellChecker(trainMisspellings, dict, 3, 0.8), 2, 0, executor);
+		server.start();
+	}
+
+	@AfterClass
+	public void stopServer() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	private String request(String method, String query, String body, int expectedStatus) throws IOException {
+		URL url = new URL("http://localhost:" + server.getPort() + SpellCheckerServer.PATH + query);
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestMethod(method);
+
+		if (body != null) {
+			conn.setDoOutput(true);
+			try (OutputStream out = conn.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		Assert.assertEquals(conn.getResponseCode(), expectedStatus);
+
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		try (InputStream in = expectedStatus == 200 ? conn.getInputStream() : conn.getErrorStream()) {
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				response.write(buf, 0, n);
+			}
+		}
+
+		return new String(response.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void getTsv() throws IOException {
+		String[] columns = request("GET", "?q=Abril&k=1", null, 200).trim().split("\t");
+
+		Assert.assertEquals(columns.length, 3);
+		Assert.assertEquals(columns[0], "Abril");
+		Assert.assertEquals(columns[1], "April");
+		Assert.assertEquals(columns[2], "1.61");
+	}
+
+	@Test
+	public void postTsv() throws IOException {
+		String[] lines = request("POST", "", "Abril\tApril\t3\n\nArzd\n", 200).split("\n");
+
+		Assert.assertEquals(lines.length, 2);
+		Assert.assertTrue(lines[0].startsWith("Abril\tApril\t3\tApril\t1.61\t"));
+		Assert.assertEquals(lines[0].split("\t").length, 7);
+		Assert.assertTrue(lines[1].startsWith("Arzd\t"));
+		Assert.assertEquals(lines[1].split("\t").length, 5);
+	}
+
+	@Test
+	public void postJson() throws IOException {
+		String json = request("POST", "?format=json&k=1", "Abril\n\"A\\\n", 200);
+
+		Assert.assertTrue(json.startsWith("[{\"misspelling\":\"Abril\",\"candidates\":[{\"target\":\"April\",\"prob\":1.609"));
+		Assert.assertTrue(json.contains("{\"misspelling\":\"\\\"A\\\\\",\"candidates\":[{\"target\":"));
+	}
+
+	@Test
+	public void badRequests() throws IOException {
+		request("GET", "?q=Abril&k=0", null, 400);
+		request("GET", "?q=Abril&format=xml", null, 400);
+		request("GET", "", null, 400);
+		request("GET", "?q=%E2%88%85", null, 400);
+		request("DELETE", "", null, 405);
+	}
+}
@@ -1,10 +1,14 @@
 package de.unituebingen.sfs.brillmoore;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.Assert;
 
@@ -12,6 +16,10 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import de.unituebingen.sfs.brillmoore.aligner.Alignment;
+import de.unituebingen.sfs.brillmoore.metrics.QueryStats;
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics;
+import de.unituebingen.sfs.brillmoore.metrics.SpellCheckerMetrics.TrainingPhase;
+import de.unituebingen.sfs.brillmoore.trie.CompactTrie;
 
 public class SpellCheckerTest {
 
@@ -38,6 +46,558 @@ public class SpellCheckerTest {
 		Assert.assertEquals(spellcheckerWindow3.getRankedCandidates("Abril").get(1).getProb(), -Math.log(0.0), 0.00001);
 	}
 	
+	@Test
+	public void getRankedCandidatesWithSupplementaryChars() throws ParseException {
+		// MATHEMATICAL BOLD CAPITAL B -> A, which are surrogate pairs
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("x\uD835\uDC01y", "x\uD835\uDC00y", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("x\uD835\uDC00y", 1.0);
+		dict.put("xzy", 1.0);
+		
+		SpellChecker spellcheckerWindow0 = new SpellChecker(trainMisspellings, dict, 0, 0.8);
+		List<Candidate> candidates = spellcheckerWindow0.getRankedCandidates("x\uD835\uDC01y");
+		
+		Assert.assertEquals(candidates.get(0).getTarget(), "x\uD835\uDC00y");
+		Assert.assertEquals(candidates.get(0).getProb(), -Math.log(0.2), 0.00001);
+	}
+	
+	@Test
+	public void getRankedCandidatesWithCompiledDictionary() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("April", 1.0);
+		dict.put("Arzt", 1.0);
+		
+		Map<String, Double> customDict = new HashMap<>();
+		customDict.put("Altstadt", 1.0);
+		customDict.put("April", 0.5);
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 3, 0.8);
+		DictionaryIndex customIndex = spellchecker.compileDictionary(customDict);
+		
+		// repeated queries against the same index give the same results
+		for (int i = 0; i < 2; i++) {
+			List<Candidate> candidates = spellchecker.getRankedCandidates("Abril", customIndex);
+			Assert.assertEquals(candidates.size(), 2);
+			Assert.assertEquals(candidates.get(0).getTarget(), "April");
+			Assert.assertEquals(candidates.get(0).getProb(), -Math.log(0.2) - Math.log(0.5), 0.00001);
+		}
+		
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abril", customDict).get(0).getProb(), 
+				-Math.log(0.2) - Math.log(0.5), 0.00001);
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abril").get(1).getTarget(), "Arzt");
+		
+		spellchecker.setDictionary(customDict);
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abril").get(1).getTarget(), "Altstadt");
+	}
+	
+	@Test
+	public void getRankedCandidatesWithPruning() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Addresse", "Adresse", 1));
+		trainMisspellings.add(new Misspelling("Alkahol", "Alkohol", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Adresse", "Adressen", 
+				"Altstadt", "Alkohol", "Arzt", "Arzte", "Ast", "Stadt" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		
+		for (String m : new String[] { "Abeit", "Abril", "Altstod", "Arz", "Adrese", "Stat" }) {
+			List<Candidate> all = spellchecker.getRankedCandidates(m);
+			
+			for (int k = 1; k <= 4; k++) {
+				spellchecker.setPruning(true);
+				List<Candidate> pruned = spellchecker.getRankedCandidates(m, k);
+				spellchecker.setPruning(false);
+				List<Candidate> unpruned = spellchecker.getRankedCandidates(m, k);
+				
+				Assert.assertEquals(pruned.size(), k);
+				Assert.assertEquals(unpruned.size(), k);
+				for (int i = 0; i < k; i++) {
+					Assert.assertEquals(pruned.get(i).getTarget(), all.get(i).getTarget());
+					Assert.assertEquals(pruned.get(i).getProb(), all.get(i).getProb());
+					Assert.assertEquals(unpruned.get(i).getTarget(), all.get(i).getTarget());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void getRankedCandidatesForBatch() throws ParseException, InterruptedException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("April", 1.0);
+		dict.put("Arzt", 1.0);
+		dict.put("Altstadt", 1.0);
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 3, 0.8);
+		
+		List<String> misspellings = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			misspellings.add(i % 2 == 0 ? "Abril" : "Artz");
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<List<Candidate>> batch = spellchecker.getRankedCandidates(misspellings, 2, pool);
+			
+			Assert.assertEquals(batch.size(), misspellings.size());
+			for (int i = 0; i < misspellings.size(); i++) {
+				List<Candidate> candidates = spellchecker.getRankedCandidates(misspellings.get(i), 2);
+				Assert.assertEquals(batch.get(i).size(), 2);
+				Assert.assertEquals(batch.get(i).get(0).getTarget(), candidates.get(0).getTarget());
+				Assert.assertEquals(batch.get(i).get(0).getProb(), candidates.get(0).getProb());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void getRankedCandidatesForBatchWithSharedPrefixes() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Arzte", 
+				"Ast", "Stadt", "Staat" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		
+		// misspellings that are prefixes of each other, duplicates and an
+		// unknown character
+		List<String> misspellings = new ArrayList<>();
+		for (String m : new String[] { "Abeit", "Abeiten", "Abe", "Stat", "Abril", "Abeit", "Arz", "Sta", "Äst", "" }) {
+			misspellings.add(m);
+		}
+		
+		for (boolean pruning : new boolean[] { true, false }) {
+			spellchecker.setPruning(pruning);
+			
+			for (int k = 1; k <= 4; k++) {
+				List<List<Candidate>> batch = spellchecker.getRankedCandidates(misspellings, k);
+				
+				Assert.assertEquals(batch.size(), misspellings.size());
+				for (int i = 0; i < misspellings.size(); i++) {
+					List<Candidate> candidates = spellchecker.getRankedCandidates(misspellings.get(i), k);
+					Assert.assertEquals(batch.get(i).size(), candidates.size());
+					for (int j = 0; j < candidates.size(); j++) {
+						Assert.assertEquals(batch.get(i).get(j).getTarget(), candidates.get(j).getTarget());
+						Assert.assertEquals(batch.get(i).get(j).getProb(), candidates.get(j).getProb());
+					}
+				}
+			}
+		}
+		
+		Assert.assertTrue(spellchecker.getRankedCandidates(new ArrayList<String>(), 3).isEmpty());
+	}
+	
+	@Test(expectedExceptions = ParseException.class)
+	public void getRankedCandidatesForBatchWithReservedTestingChars() throws ParseException, InterruptedException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("April", 1.0);
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 0, 0.8);
+		
+		List<String> misspellings = new ArrayList<>();
+		misspellings.add("Abril");
+		misspellings.add("A∀bril");
+		
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			spellchecker.getRankedCandidates(misspellings, 1, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void getRankedCandidatesWithParallelSearch() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "", "A", "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", 
+				"Ast", "Stadt", "Staat", "Bad", "Bahn" }) {
+			dict.put(w, 1.0);
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (String m : new String[] { "Abeit", "Abril", "Stat", "Bd" }) {
+				List<Candidate> sequential = spellchecker.getRankedCandidates(m, 5);
+				
+				for (int levels = 1; levels <= 3; levels++) {
+					spellchecker.setParallelSearch(pool, levels);
+					List<Candidate> parallel = spellchecker.getRankedCandidates(m, 5);
+					spellchecker.setParallelSearch(null, 1);
+					
+					Assert.assertEquals(parallel.size(), sequential.size());
+					for (int i = 0; i < sequential.size(); i++) {
+						Assert.assertEquals(parallel.get(i).getTarget(), sequential.get(i).getTarget());
+						Assert.assertEquals(parallel.get(i).getProb(), sequential.get(i).getProb());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void getRankedCandidatesWithBeamSearch() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "", "A", "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", 
+				"Ast", "Stadt", "Staat", "Bad", "Bahn" }) {
+			dict.put(w, 1.0);
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		
+		for (String m : new String[] { "Abeit", "Abril", "Stat", "Bd" }) {
+			List<Candidate> all = spellchecker.getRankedCandidates(m);
+			List<Candidate> exact = spellchecker.getRankedCandidates(m, 5);
+			
+			// a beam wider than the trie is an exact search
+			spellchecker.setBeamWidth(100);
+			List<Candidate> wide = spellchecker.getRankedCandidates(m, 5);
+			spellchecker.setBeamWidth(1);
+			List<Candidate> narrow = spellchecker.getRankedCandidates(m, 5);
+			spellchecker.setBeamWidth(0);
+			
+			Assert.assertEquals(wide.size(), exact.size());
+			for (int i = 0; i < exact.size(); i++) {
+				Assert.assertEquals(wide.get(i).getTarget(), exact.get(i).getTarget());
+				Assert.assertEquals(wide.get(i).getProb(), exact.get(i).getProb());
+			}
+			
+			// candidates found with a narrow beam are scored as in the
+			// exact search
+			Assert.assertFalse(narrow.isEmpty());
+			for (Candidate c : narrow) {
+				for (Candidate a : all) {
+					if (a.getTarget().equals(c.getTarget())) {
+						Assert.assertEquals(c.getProb(), a.getProb());
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void saveAndLoadModel() throws ParseException, IOException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		
+		File modelFile = File.createTempFile("brillmoore", ".model");
+		modelFile.deleteOnExit();
+		spellchecker.saveModel(modelFile);
+		SpellChecker loaded = new SpellChecker(modelFile, dict);
+		
+		Assert.assertEquals(loaded.getWindow(), 2);
+		Assert.assertEquals(loaded.getMinAtoA(), 0.8);
+		for (String m : new String[] { "Abeit", "Abril", "Altstod", "Arzte" }) {
+			List<Candidate> expected = spellchecker.getRankedCandidates(m);
+			List<Candidate> actual = loaded.getRankedCandidates(m);
+			
+			Assert.assertEquals(actual.size(), expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(actual.get(i).getTarget(), expected.get(i).getTarget());
+				Assert.assertEquals(actual.get(i).getProb(), expected.get(i).getProb());
+			}
+		}
+	}
+	
+	@Test
+	public void addMisspellings() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		// the second batch has new alignments for known characters and a
+		// new character, which requires compiling the model again
+		List<Misspelling> newMisspellings = new ArrayList<>();
+		newMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		newMisspellings.add(new Misspelling("Abeit", "Arbeit", 1));
+		List<Misspelling> newCharMisspellings = new ArrayList<>();
+		newCharMisspellings.add(new Misspelling("Arzte", "Ärzte", 1));
+		
+		List<Misspelling> allMisspellings = new ArrayList<>(trainMisspellings);
+		allMisspellings.addAll(newMisspellings);
+		allMisspellings.addAll(newCharMisspellings);
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		spellchecker.addMisspellings(newMisspellings);
+		spellchecker.addMisspellings(newCharMisspellings);
+		SpellChecker retrained = new SpellChecker(allMisspellings, dict, 2, 0.8);
+		
+		for (String m : new String[] { "Abeit", "Abril", "Altstod", "Arzte", "Alstadt" }) {
+			List<Candidate> expected = retrained.getRankedCandidates(m);
+			List<Candidate> actual = spellchecker.getRankedCandidates(m);
+			
+			Assert.assertEquals(actual.size(), expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(actual.get(i).getTarget(), expected.get(i).getTarget());
+				Assert.assertEquals(actual.get(i).getProb(), expected.get(i).getProb(), 1e-12);
+			}
+		}
+	}
+	
+	@Test
+	public void cacheResults() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		spellchecker.setResultCache(2);
+		ResultCache cache = spellchecker.getResultCache();
+		
+		List<Candidate> first = spellchecker.getRankedCandidates("Abeit", 3);
+		first.get(0).setProb(-1.0);
+		List<Candidate> second = spellchecker.getRankedCandidates("Abeit", 3);
+		Assert.assertEquals(cache.getMisses(), 1);
+		Assert.assertEquals(cache.getHits(), 1);
+		Assert.assertEquals(second.get(0).getTarget(), "Arbeit");
+		Assert.assertTrue(second.get(0).getProb() >= 0);
+		
+		// a different k is a different entry and "Abeit" is evicted as the
+		// least recently used entry
+		spellchecker.getRankedCandidates("Abeit", 2);
+		spellchecker.getRankedCandidates("Abril", 3);
+		Assert.assertEquals(cache.getEvictions(), 1);
+		spellchecker.getRankedCandidates("Abeit", 2);
+		Assert.assertEquals(cache.getHits(), 2);
+		spellchecker.getRankedCandidates("Abeit", 3);
+		Assert.assertEquals(cache.getMisses(), 4);
+		
+		// the cache is cleared when the model or the dictionary changes
+		List<Misspelling> newMisspellings = new ArrayList<>();
+		newMisspellings.add(new Misspelling("Abeit", "Arbeiten", 5));
+		spellchecker.addMisspellings(newMisspellings);
+		Assert.assertEquals(cache.size(), 0);
+		
+		trainMisspellings.addAll(newMisspellings);
+		List<Candidate> expected = new SpellChecker(trainMisspellings, dict, 2, 0.8).getRankedCandidates("Abeit", 3);
+		List<Candidate> actual = spellchecker.getRankedCandidates("Abeit", 3);
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(actual.get(i).getTarget(), expected.get(i).getTarget());
+			Assert.assertEquals(actual.get(i).getProb(), expected.get(i).getProb(), 1e-12);
+		}
+		
+		dict.remove("Arbeit");
+		spellchecker.setDictionary(dict);
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abeit", 3).get(0).getTarget(), "Arbeiten");
+		Assert.assertEquals(cache.getHits(), 2);
+		
+		spellchecker.setResultCache(0);
+		Assert.assertNull(spellchecker.getResultCache());
+	}
+	
+	@Test
+	public void recordMetrics() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		SpellCheckerMetrics metrics = spellchecker.getMetrics();
+		for (TrainingPhase phase : TrainingPhase.values()) {
+			Assert.assertTrue(metrics.getTrainingNanos(phase) > 0);
+		}
+		
+		List<QueryStats> queries = new ArrayList<>();
+		metrics.setQueryListener(queries::add);
+		
+		// without pruning, a sequential and a split search both visit
+		// every node of the dictionary trie once
+		CompactTrie trie = spellchecker.compileDictionary(dict).getTrie();
+		spellchecker.setPruning(false);
+		spellchecker.getRankedCandidates("Abeit", 2);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		spellchecker.setParallelSearch(pool, 2);
+		spellchecker.getRankedCandidates("Abeit", 2);
+		pool.shutdown();
+		
+		Assert.assertEquals(queries.size(), 2);
+		for (QueryStats q : queries) {
+			Assert.assertEquals(q.getMisspelling(), "Abeit");
+			Assert.assertEquals(q.getNodesVisited(), trie.size());
+			Assert.assertEquals(q.getCellsComputed(), trie.size() * "\u2205\u2200Abeit\u2203\u2205".length());
+			Assert.assertEquals(q.getCandidatesScored(), dict.size());
+			Assert.assertEquals(q.getCandidatesReturned(), 2);
+			Assert.assertTrue(q.getRuleLookups() > q.getCellsComputed());
+		}
+		Assert.assertEquals(queries.get(1).getRuleLookups(), queries.get(0).getRuleLookups());
+		
+		// cached queries do no work
+		spellchecker.setParallelSearch(null, 1);
+		spellchecker.setResultCache(10);
+		spellchecker.getRankedCandidates("Abeit", 2);
+		spellchecker.getRankedCandidates("Abeit", 2);
+		Assert.assertTrue(queries.get(3).isCached());
+		Assert.assertEquals(queries.get(3).getNodesVisited(), 0);
+		
+		Assert.assertEquals(metrics.getQueries(), 4);
+		Assert.assertEquals(metrics.getCachedQueries(), 1);
+		Assert.assertEquals(metrics.getNodesVisited(), 3 * trie.size());
+		Assert.assertEquals(metrics.getLatency().getCount(), 4);
+		Assert.assertTrue(metrics.getMaxLatencyMillis() > 0);
+		
+		metrics.reset();
+		Assert.assertEquals(metrics.getQueries(), 0);
+		Assert.assertEquals(metrics.getLatency().getCount(), 0);
+	}
+	
+	@Test
+	public void trainInParallel() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 1));
+		trainMisspellings.add(new Misspelling("Arzte", "Ärzte", 1));
+		trainMisspellings.add(new Misspelling("Abril", "April", 3));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		SpellChecker parallel;
+		try {
+			parallel = new SpellChecker(trainMisspellings, dict, 2, 0.8, pool);
+		} finally {
+			pool.shutdown();
+		}
+		
+		for (String m : new String[] { "Abeit", "Abril", "Altstod", "Arzte" }) {
+			List<Candidate> expected = spellchecker.getRankedCandidates(m);
+			List<Candidate> actual = parallel.getRankedCandidates(m);
+			
+			Assert.assertEquals(actual.size(), expected.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(actual.get(i).getTarget(), expected.get(i).getTarget());
+				Assert.assertEquals(actual.get(i).getProb(), expected.get(i).getProb());
+			}
+		}
+	}
+	
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void addMisspellingsToLoadedModel() throws ParseException, IOException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		Map<String, Double> dict = new HashMap<>();
+		dict.put("Arbeit", 1.0);
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, dict, 2, 0.8);
+		File modelFile = File.createTempFile("brillmoore", ".model");
+		modelFile.deleteOnExit();
+		spellchecker.saveModel(modelFile);
+		
+		new SpellChecker(modelFile, dict).addMisspellings(trainMisspellings);
+	}
+
+	@Test
+	public void getRankedCandidatesWithLoadedDictionaryIndex() throws ParseException, IOException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, new HashMap<String, Double>(), 2, 0.8);
+		DictionaryIndex index = spellchecker.compileDictionary(dict);
+		File indexFile = File.createTempFile("brillmoore", ".index");
+		indexFile.deleteOnExit();
+		index.save(indexFile);
+		spellchecker.setDictionary(new DictionaryIndex(indexFile));
+		
+		for (String m : new String[] { "Abeit", "Abril", "Ärzt" }) {
+			List<Candidate> expected = spellchecker.getRankedCandidates(m, index);
+			List<Candidate> actual = spellchecker.getRankedCandidates(m);
+			
+			Assert.assertEquals(actual.size(), dict.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(actual.get(i).getTarget(), expected.get(i).getTarget());
+				Assert.assertEquals(actual.get(i).getProb(), expected.get(i).getProb());
+			}
+		}
+	}
+	
+	@Test(expectedExceptions = ParseException.class)
+	public void loadInvalidModel() throws ParseException, IOException {
+		File modelFile = File.createTempFile("brillmoore", ".model");
+		modelFile.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(modelFile)) {
+			out.println("Abril\tApril\t1");
+		}
+		
+		new SpellChecker(modelFile, new HashMap<String, Double>());
+	}
+	
 	@Test(expectedExceptions = ParseException.class)
 	public void getRankedCandidatesWithReservedDictionaryChars() throws ParseException {
 		// TODO: expand test
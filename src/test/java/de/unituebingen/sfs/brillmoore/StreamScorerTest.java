@@ -0,0 +1,76 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StreamScorerTest {
+
+	private SpellChecker makeSpellChecker() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abeit", "Arbeit", 2));
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Alstadt", "Altstadt", 1));
+		
+		Map<String, Double> dict = new HashMap<>();
+		for (String w : new String[] { "Arbeit", "Arbeiten", "April", "Altstadt", "Arzt", "Ärzte" }) {
+			dict.put(w, 1.0 / w.length());
+		}
+		
+		return new SpellChecker(trainMisspellings, dict, 2, 0.8);
+	}
+
+	@Test
+	public void scoreInInputOrder() throws ParseException, IOException, InterruptedException {
+		SpellChecker spellchecker = makeSpellChecker();
+		String[] misspellings = { "Abeit", "Abril", "Altstod", "Arzte", "Alstadt", "Aprl", "Arbeitn" };
+		
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			String m = misspellings[i % misspellings.length];
+			input.append(m).append('\t').append("target").append(i % 3 == 0 ? "" : "\t" + i).append('\n');
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		StringWriter out = new StringWriter();
+		try {
+			new StreamScorer(spellchecker, 2, pool, 3).score(new BufferedReader(new StringReader(input.toString())), out);
+		} finally {
+			pool.shutdown();
+		}
+		
+		String[] lines = out.toString().split(System.lineSeparator());
+		Assert.assertEquals(lines.length, 20);
+		for (int i = 0; i < 20; i++) {
+			String m = misspellings[i % misspellings.length];
+			String[] columns = lines[i].split("\t");
+			List<Candidate> candidates = spellchecker.getRankedCandidates(m, 2);
+			
+			Assert.assertEquals(columns[0], m);
+			Assert.assertEquals(columns[2], i % 3 == 0 ? "1" : Integer.toString(i));
+			Assert.assertEquals(columns.length, 3 + 2 * candidates.size());
+			Assert.assertEquals(columns[3], candidates.get(0).getTarget());
+		}
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void scoreInvalidLine() throws ParseException, IOException, InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			new StreamScorer(makeSpellChecker(), 2, pool, 3).score(
+					new BufferedReader(new StringReader("Abeit\tArbeit\nAbril\n")), new StringWriter());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
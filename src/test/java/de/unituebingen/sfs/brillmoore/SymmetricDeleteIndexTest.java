@@ -0,0 +1,113 @@
+package de.unituebingen.sfs.brillmoore;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SymmetricDeleteIndexTest {
+
+	private static Map<String, Double> getWords() {
+		Map<String, Double> words = new HashMap<>();
+		words.put("April", 0.25);
+		words.put("Apfel", 0.25);
+		words.put("Arzt", 0.25);
+		words.put("Altstadt", 0.25);
+		return words;
+	}
+
+	private static Set<String> getCandidates(SymmetricDeleteIndex deletes, String m) {
+		Set<String> candidates = new HashSet<>();
+		for (int node : deletes.getCandidates(m)) {
+			candidates.add(deletes.getDictionaryIndex().getWord(node));
+		}
+		return candidates;
+	}
+
+	@Test
+	public void getCandidates() throws ParseException {
+		DictionaryIndex index = new DictionaryIndex(getWords());
+
+		SymmetricDeleteIndex exact = new SymmetricDeleteIndex(index, 0, 7);
+		Assert.assertEquals(getCandidates(exact, "Arzt"), new HashSet<>(Arrays.asList("Arzt")));
+		Assert.assertTrue(getCandidates(exact, "Abril").isEmpty());
+
+		SymmetricDeleteIndex one = new SymmetricDeleteIndex(index, 1, 7);
+		Assert.assertEquals(getCandidates(one, "Abril"), new HashSet<>(Arrays.asList("April")));
+		Assert.assertEquals(getCandidates(one, "Arz"), new HashSet<>(Arrays.asList("Arzt")));
+		Assert.assertEquals(getCandidates(one, "Aprl"), new HashSet<>(Arrays.asList("April")));
+
+		SymmetricDeleteIndex two = new SymmetricDeleteIndex(index, 2, 7);
+		Assert.assertEquals(getCandidates(two, "Apirl"), new HashSet<>(Arrays.asList("April", "Apfel")));
+
+		// only the prefix is compared
+		SymmetricDeleteIndex prefix = new SymmetricDeleteIndex(index, 0, 4);
+		Assert.assertEquals(prefix.getPrefixLength(), 4);
+		Assert.assertEquals(getCandidates(prefix, "Altsdat"), new HashSet<>(Arrays.asList("Altstadt")));
+		Assert.assertEquals(prefix.size(), 4);
+	}
+
+	@Test
+	public void getCandidatesSupplementary() throws ParseException {
+		Map<String, Double> words = new HashMap<>();
+		words.put("a\uD835\uDC00b", 0.5);
+		words.put("xyz", 0.5);
+
+		// a supplementary character is deleted as one character
+		SymmetricDeleteIndex one = new SymmetricDeleteIndex(new DictionaryIndex(words), 1, 7);
+		Assert.assertEquals(getCandidates(one, "ab"), new HashSet<>(Arrays.asList("a\uD835\uDC00b")));
+		Assert.assertEquals(one.size(), 8);
+
+		// the prefix length counts code points
+		SymmetricDeleteIndex prefix = new SymmetricDeleteIndex(new DictionaryIndex(words), 0, 2);
+		Assert.assertEquals(getCandidates(prefix, "a\uD835\uDC00c"), new HashSet<>(Arrays.asList("a\uD835\uDC00b")));
+	}
+
+	@Test
+	public void getRankedCandidates() throws ParseException {
+		List<Misspelling> trainMisspellings = new ArrayList<>();
+		trainMisspellings.add(new Misspelling("Abril", "April", 1));
+		trainMisspellings.add(new Misspelling("Artz", "Arzt", 1));
+
+		SpellChecker spellchecker = new SpellChecker(trainMisspellings, getWords(), 3, 0.8);
+		List<Candidate> all = spellchecker.getRankedCandidates("Abril", 10);
+
+		SymmetricDeleteIndex deletes = new SymmetricDeleteIndex(spellchecker.getDictionaryIndex(), 1, 7);
+		spellchecker.setCandidateIndex(deletes);
+		Set<String> generated = getCandidates(deletes, "Abril");
+		List<Candidate> restricted = spellchecker.getRankedCandidates("Abril", 10);
+
+		// the candidates are scored and ranked as in the full search
+		List<Candidate> expected = new ArrayList<>();
+		for (Candidate c : all) {
+			if (generated.contains(c.getTarget())) {
+				expected.add(c);
+			}
+		}
+		Assert.assertEquals(restricted.size(), expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(restricted.get(i).getTarget(), expected.get(i).getTarget());
+			Assert.assertEquals(restricted.get(i).getProb(), expected.get(i).getProb(), 1e-12);
+		}
+
+		// the index is not used for other dictionaries
+		Map<String, Double> otherWords = new HashMap<>();
+		otherWords.put("Altstadt", 1.0);
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abril", otherWords, 10).get(0).getTarget(), "Altstadt");
+
+		spellchecker.setCandidateIndex(null);
+		Assert.assertEquals(spellchecker.getRankedCandidates("Abril", 10).size(), all.size());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void negativeDistance() throws ParseException {
+		new SymmetricDeleteIndex(new DictionaryIndex(getWords()), -1, 7);
+	}
+}
@@ -2,7 +2,9 @@ package de.unituebingen.sfs.brillmoore.aligner;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -25,6 +27,15 @@ public class AlignmentUtilsTest {
 		Assert.assertEquals(AlignmentUtils.combineAlignments(l), new Alignment("ac", "bd"));
 	}
 
+	@Test
+	public void containsReservedChars() {
+		Assert.assertFalse(AlignmentUtils.containsReservedChars(""));
+		Assert.assertFalse(AlignmentUtils.containsReservedChars("Ärzte \ud835\udc00"));
+		Assert.assertTrue(AlignmentUtils.containsReservedChars("A" + AlignmentUtils.leftPadding + "bril"));
+		Assert.assertTrue(AlignmentUtils.containsReservedChars(AlignmentUtils.padWord("")));
+		Assert.assertTrue(AlignmentUtils.containsReservedChars("Abril" + AlignmentUtils.nullString));
+	}
+
 	@Test
 	public void extendAlignments() {
 		List<Alignment> extendedAlignments = AlignmentUtils.extendAlignments(l, window);
@@ -43,4 +54,28 @@ public class AlignmentUtilsTest {
 		Assert.assertEquals(Collections.frequency(extendedAlignments, new Alignment(AlignmentUtils.rightPadding, AlignmentUtils.rightPadding)), 1);
 		Assert.assertEquals(Collections.frequency(extendedAlignments, new Alignment(AlignmentUtils.rightPadding + AlignmentUtils.nullString, AlignmentUtils.rightPadding + AlignmentUtils.nullString)), 2);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void extendAlignmentsFromPath() {
+		LevenshteinAligner la = new LevenshteinAligner(1, 1, 1);
+		AlignmentPath path = new AlignmentPath();
+		String[][] pairs = { { "ac", "bd" }, { "Arbeit", "Abeit" }, { "", "ab" }, { "ab", "" }, { "", "" } };
+		
+		for (String[] pair : pairs) {
+			for (int w = 0; w <= 3; w++) {
+				la.align(pair[0], pair[1], path);
+				
+				Map<Alignment, Integer> expected = new HashMap<>();
+				for (Alignment a : AlignmentUtils.extendAlignments(la.getAlignments(pair[0], pair[1]), w)) {
+					expected.merge(a, 1, Integer::sum);
+				}
+				
+				final Map<Alignment, Integer> actual = new HashMap<>();
+				AlignmentUtils.extendAlignments(path, w, (lhs, lhsStart, lhsEnd, rhs, rhsStart, rhsEnd, count) -> 
+						actual.merge(new Alignment(lhs.substring(lhsStart, lhsEnd), rhs.substring(rhsStart, rhsEnd)), count, Integer::sum));
+				
+				Assert.assertEquals(actual, expected);
+			}
+		}
+	}
+}
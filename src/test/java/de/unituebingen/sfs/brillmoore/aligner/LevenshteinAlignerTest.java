@@ -45,4 +45,55 @@ public class LevenshteinAlignerTest {
 		Assert.assertEquals(l.get(3), LevenshteinAligner.EditOps.sub);
 		Assert.assertEquals(l.get(4), LevenshteinAligner.EditOps.delete);
 	}
+
+	@Test
+	public void alignWithPath() {
+		AlignmentPath path = new AlignmentPath();
+		la.align("abaa", "acbd", path);
+		
+		Assert.assertEquals(path.size(), 5);
+		Assert.assertEquals(path.getOp(1), AlignmentPath.INSERT);
+		Assert.assertEquals(path.getDistance(), 3);
+		
+		// the operations 1 to 3 align "ba" with "cbd"
+		Assert.assertEquals(path.getSourceStart(1), 1);
+		Assert.assertEquals(path.getSourceEnd(3), 3);
+		Assert.assertEquals(path.getTargetStart(1), 1);
+		Assert.assertEquals(path.getTargetEnd(3), 4);
+		
+		// the path is reused
+		la.align("", "ab", path);
+		Assert.assertEquals(path.size(), 2);
+		Assert.assertEquals(path.getAlignments().get(1), new Alignment("", "b"));
+	}
+	
+	@Test
+	public void alignSupplementaryChars() {
+		// a surrogate pair is one character
+		Assert.assertEquals(la.getDistance("x\uD835\uDC01y", "x\uD835\uDC00y"), 1);
+		
+		List<Alignment> l = la.getAlignments("x\uD835\uDC01y", "xy");
+		Assert.assertEquals(l.size(), 3);
+		Assert.assertEquals(l.get(1), new Alignment("\uD835\uDC01", ""));
+		
+		AlignmentPath path = new AlignmentPath();
+		la.align("\uD835\uDC01", "a\uD835\uDC00", path);
+		Assert.assertEquals(path.size(), 2);
+		Assert.assertEquals(path.getTargetStart(1), 1);
+		Assert.assertEquals(path.getTargetEnd(1), 3);
+	}
+	
+	@Test
+	public void alignInBlocks() {
+		LevenshteinAligner blocks = new LevenshteinAligner(1, 1, 1);
+		blocks.setMaxBacktraceSize(1);
+		
+		String[] words = { "abaa", "acbd", "sitting", "kitten", "Saturday", "Sunday", "a", "",
+				"reorganision", "reorganisation", "aabbaabbaabbaabb", "babababababa" };
+		for (String source : words) {
+			for (String target : words) {
+				Assert.assertEquals(blocks.getEdits(source, target), la.getEdits(source, target));
+			}
+		}
+	}
 }
@@ -0,0 +1,43 @@
+package de.unituebingen.sfs.brillmoore.errormodel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AlignmentCountsTest {
+
+	@Test
+	public void addAndGetId() {
+		AlignmentCounts counts = new AlignmentCounts();
+
+		Assert.assertEquals(counts.add("a", "b", 1), 0);
+		Assert.assertEquals(counts.add("b", "a", 2), 1);
+		Assert.assertEquals(counts.add("a", "b", 3), 0);
+
+		Assert.assertEquals(counts.size(), 2);
+		Assert.assertEquals(counts.getId("b", "a"), 1);
+		Assert.assertEquals(counts.getId("a", "a"), AlignmentCounts.NONE);
+		Assert.assertEquals(counts.getLhs(1), "b");
+		Assert.assertEquals(counts.getRhs(1), "a");
+		Assert.assertEquals(counts.getCount(0), 4);
+	}
+
+	@Test
+	public void growAndMerge() {
+		AlignmentCounts counts = new AlignmentCounts();
+		AlignmentCounts other = new AlignmentCounts();
+
+		for (int i = 0; i < 1000; i++) {
+			counts.add(Integer.toString(i), "x", 1);
+			other.add(Integer.toString(999 - i), "x", 2);
+			other.add(Integer.toString(i), "y", 1);
+		}
+		counts.addAll(other);
+
+		Assert.assertEquals(counts.size(), 2000);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(counts.getId(Integer.toString(i), "x"), i);
+			Assert.assertEquals(counts.getCount(i), 3);
+			Assert.assertEquals(counts.getCount(counts.getId(Integer.toString(i), "y")), 1);
+		}
+	}
+}
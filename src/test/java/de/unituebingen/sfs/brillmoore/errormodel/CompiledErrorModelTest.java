@@ -0,0 +1,221 @@
+package de.unituebingen.sfs.brillmoore.errormodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import de.unituebingen.sfs.brillmoore.aligner.Alignment;
+import de.unituebingen.sfs.brillmoore.aligner.AlignmentUtils;
+import de.unituebingen.sfs.brillmoore.io.BinaryReader;
+import de.unituebingen.sfs.brillmoore.io.BinaryWriter;
+
+public class CompiledErrorModelTest {
+	private double minAtoA = 0.8;
+
+	private void assertCosts(CompiledErrorModel c, ErrorModel e) {
+		for (Map.Entry<Alignment, Double> a : e.getModel().entrySet()) {
+			int[] lhs = c.getSymbols(a.getKey().lhs);
+			int[] rhs = c.getSymbols(a.getKey().rhs);
+			Assert.assertEquals(c.getCost(lhs, lhs.length, rhs, rhs.length), -Math.log(a.getValue()));
+		}
+	}
+
+	@Test
+	public void getCost() {
+		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+		alignmentCounts.put(new Alignment("ab", "b"), 1);
+		alignmentCounts.put(new Alignment("ab", "ab"), 9);
+		alignmentCounts.put(new Alignment("c", AlignmentUtils.nullString), 2);
+		alignmentCounts.put(new Alignment("c", "c"), 8);
+		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+
+		CompiledErrorModel c = new CompiledErrorModel(e);
+
+		Assert.assertEquals(c.getMaxLhsLength(), 2);
+		assertCosts(c, e);
+
+		// the empty string is the null string
+		int[] cd = c.getSymbols("cd");
+		Assert.assertEquals(c.getCost(cd, 1, cd, 0), -Math.log(e.getProb(new Alignment("c", AlignmentUtils.nullString))));
+
+		// missing rules and unknown symbols
+		int[] ab = c.getSymbols("ab");
+		Assert.assertEquals(c.getCost(ab, 1, ab, 1), Double.POSITIVE_INFINITY);
+		Assert.assertEquals(c.getCost(cd, 2, cd, 2), Double.POSITIVE_INFINITY);
+		Assert.assertEquals(c.getSymbol('d'), c.getSymbol('e'));
+		Assert.assertEquals(c.next(c.getBetaRoot(), c.getSymbol('d')), CompiledErrorModel.DEAD);
+
+		// following the reversed beta and alpha one symbol at a time
+		int betaState = c.next(c.getBetaRoot(), ab[1]);
+		int alphaState = c.next(c.getAlphaRoot(betaState), ab[1]);
+		Assert.assertEquals(c.getCost(alphaState), Double.POSITIVE_INFINITY);
+		alphaState = c.next(alphaState, ab[0]);
+		Assert.assertEquals(c.getCost(alphaState), -Math.log(e.getProb(new Alignment("ab", "b"))));
+		Assert.assertEquals(c.next(alphaState, ab[0]), CompiledErrorModel.DEAD);
+	}
+
+	@Test
+	public void update() {
+		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+		alignmentCounts.put(new Alignment("ab", "b"), 1);
+		alignmentCounts.put(new Alignment("c", "c"), 8);
+		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+		CompiledErrorModel c = new CompiledErrorModel(e);
+
+		// new rules for an existing and a new LHS
+		AlignmentCounts newCounts = new AlignmentCounts();
+		newCounts.add("ab", "ab", 9);
+		newCounts.add("bc", "c", 2);
+		int[] changed = e.addAlignmentCounts(newCounts);
+		Assert.assertEquals(changed.length, 3);
+
+		CompiledErrorModel updated = c.update(e, changed);
+		Assert.assertEquals(updated.getMaxLhsLength(), 2);
+		assertCosts(updated, e);
+		Assert.assertEquals(updated.getCost(updated.getSymbols("bc"), 2, updated.getSymbols("c"), 1), 
+				-Math.log(e.getProb(new Alignment("bc", "c"))));
+
+		// the original model is not modified
+		int[] ab = c.getSymbols("ab");
+		Assert.assertEquals(c.getCost(ab, 2, ab, 2), Double.POSITIVE_INFINITY);
+		Assert.assertEquals(c.getCost(ab, 2, c.getSymbols("b"), 1), -Math.log(1.0 - minAtoA));
+
+		// rules with new characters need a new alphabet
+		newCounts = new AlignmentCounts();
+		newCounts.add("d", "c", 1);
+		Assert.assertNull(updated.update(e, e.addAlignmentCounts(newCounts)));
+	}
+
+	@Test
+	public void compactStateTable() {
+		String letters = "abcdefghijklmnopqrstuvwxyz";
+		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+		int numSymbols = 0;
+		for (int i = 0; i < letters.length(); i++) {
+			for (int j = 0; j < letters.length(); j++) {
+				alignmentCounts.put(new Alignment(letters.substring(i, i + 1), letters.substring(j, j + 1)), 1 + i + j);
+				numSymbols += 3;
+			}
+		}
+		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+		CompiledErrorModel c = new CompiledErrorModel(e);
+		assertCosts(c, e);
+
+		// the table grows with the rules and not with the number of states
+		// times the number of symbols
+		int width = c.getAlphabet().size() + 1;
+		Assert.assertTrue(c.size() < numSymbols + 2 * width, "size " + c.size());
+	}
+
+	@Test
+	public void updateMovesStates() {
+		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+		alignmentCounts.put(new Alignment("ab", "b"), 1);
+		alignmentCounts.put(new Alignment("cd", "dc"), 1);
+		alignmentCounts.put(new Alignment("abcd", "abcd"), 1);
+		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+		CompiledErrorModel c = new CompiledErrorModel(e);
+
+		// new children for most states, whose slots are mostly taken
+		String letters = "abcd";
+		AlignmentCounts newCounts = new AlignmentCounts();
+		for (int i = 0; i < letters.length(); i++) {
+			for (int j = 0; j < letters.length(); j++) {
+				newCounts.add(letters.substring(i, i + 1) + letters.charAt(j), letters.substring(j), i + 1);
+				newCounts.add(letters.substring(j), letters.charAt(i) + letters.substring(i), j + 1);
+			}
+		}
+
+		CompiledErrorModel updated = c.update(e, e.addAlignmentCounts(newCounts));
+		assertCosts(updated, e);
+		assertCosts(updated.update(e, new int[0]), e);
+	}
+
+	@Test
+	public void updateAddsPaths() {
+		String letters = "abcdefghijklmnopqrstuvwxyz";
+		int[] sizes = new int[2];
+		int[] added = new int[2];
+
+		for (int k = 0; k < 2; k++) {
+			// identity rules for all letters and, in the larger model, rules
+			// for all pairs of letters
+			Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+			for (int i = 0; i < letters.length(); i++) {
+				String a = letters.substring(i, i + 1);
+				alignmentCounts.put(new Alignment(a, a), 1);
+				for (int j = 0; k == 1 && j < letters.length(); j++) {
+					String b = letters.substring(j, j + 1);
+					alignmentCounts.put(new Alignment(a + b, b + a), 1 + i + j);
+				}
+			}
+			ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+			CompiledErrorModel c = new CompiledErrorModel(e);
+
+			// a rule with a new LHS only changes its own cost
+			AlignmentCounts newCounts = new AlignmentCounts();
+			newCounts.add("abc", "c", 1);
+			int[] changed = e.addAlignmentCounts(newCounts);
+			Assert.assertEquals(changed.length, 1);
+
+			CompiledErrorModel updated = c.update(e, changed);
+			assertCosts(updated, e);
+			sizes[k] = c.size();
+			added[k] = updated.size() - c.size();
+
+			// updates of the same model do not share their new states
+			newCounts = new AlignmentCounts();
+			newCounts.add("xyz", "x", 1);
+			CompiledErrorModel other = c.update(e, e.addAlignmentCounts(newCounts));
+			int[] abc = c.getSymbols("abc");
+			int[] xyz = c.getSymbols("xyz");
+			Assert.assertEquals(other.getCost(xyz, 3, xyz, 1), -Math.log(e.getProb(new Alignment("xyz", "x"))));
+			Assert.assertEquals(other.getCost(abc, 3, c.getSymbols("c"), 1), Double.POSITIVE_INFINITY);
+			Assert.assertEquals(updated.getCost(xyz, 3, xyz, 1), Double.POSITIVE_INFINITY);
+			Assert.assertEquals(updated.getCost(abc, 3, c.getSymbols("c"), 1), 
+					-Math.log(e.getProb(new Alignment("abc", "c"))));
+		}
+
+		// the update adds the states on the path to the rule (and their
+		// siblings), however large the model is
+		Assert.assertTrue(sizes[1] > 10 * sizes[0], "sizes " + sizes[0] + " and " + sizes[1]);
+		Assert.assertTrue(added[1] <= added[0], "added " + added[0] + " and " + added[1] + " slots");
+	}
+
+	@Test
+	public void compactAfterUpdates() throws IOException, ParseException {
+		Map<Alignment, Integer> alignmentCounts = new HashMap<>();
+		alignmentCounts.put(new Alignment("ab", "b"), 1);
+		alignmentCounts.put(new Alignment("cd", "dc"), 1);
+		alignmentCounts.put(new Alignment("abcd", "abcd"), 1);
+		ErrorModel e = new ErrorModel(alignmentCounts, minAtoA);
+		CompiledErrorModel c = new CompiledErrorModel(e);
+		int compiledSize = c.size();
+
+		// each update copies the same paths, until the states of the
+		// earlier models are dropped
+		for (int i = 0; i < 100; i++) {
+			AlignmentCounts newCounts = new AlignmentCounts();
+			newCounts.add("ab", "b", 1);
+			newCounts.add("abcd", "abcd", 1);
+			c = c.update(e, e.addAlignmentCounts(newCounts));
+			assertCosts(c, e);
+			Assert.assertTrue(c.size() < 8 * compiledSize, "size " + c.size());
+		}
+
+		// only the states of the updated model are written
+		File modelFile = File.createTempFile("brillmoore", ".model");
+		modelFile.deleteOnExit();
+		BinaryWriter out = new BinaryWriter(modelFile);
+		c.write(out);
+		out.close();
+		CompiledErrorModel loaded = CompiledErrorModel.read(new BinaryReader(modelFile));
+		assertCosts(loaded, e);
+		Assert.assertTrue(loaded.size() < 2 * compiledSize, "size " + loaded.size());
+	}
+}
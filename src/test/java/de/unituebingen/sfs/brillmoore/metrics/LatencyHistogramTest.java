@@ -0,0 +1,39 @@
+package de.unituebingen.sfs.brillmoore.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		Assert.assertEquals(h.getPercentileNanos(50), 0);
+
+		for (long nanos = 1; nanos <= 1000; nanos++) {
+			h.record(nanos * 1000);
+		}
+
+		Assert.assertEquals(h.getCount(), 1000);
+		Assert.assertEquals(h.getMaxNanos(), 1000000);
+		Assert.assertEquals(h.getMeanNanos(), 500500.0, 1e-9);
+
+		// the buckets are at most 25% wide
+		for (double p : new double[] { 1, 50, 90, 99, 99.9 }) {
+			long expected = (long) Math.ceil(p * 10) * 1000;
+			long actual = h.getPercentileNanos(p);
+			Assert.assertTrue(actual >= expected && actual <= expected * 1.25, p + ": " + actual);
+		}
+		Assert.assertEquals(h.getPercentileNanos(100), 1000000);
+
+		// values below the first power-of-two buckets are exact
+		h.reset();
+		h.record(0);
+		h.record(3);
+		Assert.assertEquals(h.getPercentileNanos(50), 0);
+		Assert.assertEquals(h.getPercentileNanos(100), 3);
+
+		h.record(Long.MAX_VALUE);
+		Assert.assertEquals(h.getPercentileNanos(100), Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,32 @@
+package de.unituebingen.sfs.brillmoore.trie;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AlphabetTest {
+
+	@Test
+	public void idsInCodePointOrder() {
+		Alphabet alphabet = new Alphabet(Arrays.asList("cab", "bad"));
+
+		Assert.assertEquals(alphabet.size(), 4);
+		Assert.assertEquals(alphabet.getId('a'), 0);
+		Assert.assertEquals(alphabet.getId('d'), 3);
+		Assert.assertEquals(alphabet.getId('x'), Alphabet.UNKNOWN);
+		Assert.assertEquals(alphabet.encode("dcx"), new int[] { 3, 2, Alphabet.UNKNOWN });
+		Assert.assertEquals(alphabet.decode(alphabet.encode("abcd"), 1, 3), "bc");
+	}
+
+	@Test
+	public void supplementaryCharacters() {
+		String s = "a𝔄b";
+		Alphabet alphabet = new Alphabet(Arrays.asList(s));
+
+		Assert.assertEquals(alphabet.size(), 3);
+		Assert.assertEquals(alphabet.encode(s).length, 3);
+		Assert.assertEquals(alphabet.getId(0x1D504), 2);
+		Assert.assertEquals(alphabet.decode(alphabet.encode(s)), s);
+	}
+}
@@ -0,0 +1,96 @@
+package de.unituebingen.sfs.brillmoore.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompactTrieTest {
+	private final Alphabet alphabet = new Alphabet(Arrays.asList("abcfoerxyz"));
+
+	private CompactTrie makeTrie(String... keys) {
+		SortedMap<int[], Double> entries = new TreeMap<>(CompactTrie.KEY_ORDER);
+
+		for (int i = 0; i < keys.length; i++) {
+			entries.put(alphabet.encode(keys[i]), (double) i);
+		}
+
+		return new CompactTrie(entries);
+	}
+
+	private int getNode(CompactTrie trie, String key) {
+		return trie.getNode(alphabet.encode(key));
+	}
+
+	private int getChild(CompactTrie trie, int node, char c) {
+		return trie.getChild(node, alphabet.getId(c));
+	}
+
+	private void traverse(CompactTrie trie, int node, List<String> keys) {
+		if (trie.isTerminal(node)) {
+			keys.add(alphabet.decode(trie.getKey(node)));
+		}
+
+		for (int child = trie.getFirstChild(node); child != CompactTrie.NONE; child = trie.getNextSibling(child)) {
+			Assert.assertEquals(trie.getParent(child), node);
+			traverse(trie, child, keys);
+		}
+	}
+
+	@Test
+	public void insertionAndRetrieval() {
+		CompactTrie trie = makeTrie("foo", "foofer", "bar");
+
+		Assert.assertEquals(trie.getValue(getNode(trie, "foo")), 0.0);
+		Assert.assertEquals(trie.getValue(getNode(trie, "foofer")), 1.0);
+		Assert.assertEquals(trie.getValue(getNode(trie, "bar")), 2.0);
+		Assert.assertTrue(trie.isTerminal(getNode(trie, "foo")));
+		Assert.assertFalse(trie.isTerminal(getNode(trie, "foof")));
+		Assert.assertTrue(Double.isNaN(trie.getValue(getNode(trie, "foof"))));
+		Assert.assertEquals(getNode(trie, "baz"), CompactTrie.NONE);
+		Assert.assertEquals(getNode(trie, "fooferx"), CompactTrie.NONE);
+	}
+
+	@Test
+	public void nodesInDepthFirstOrder() {
+		CompactTrie trie = makeTrie("b", "ab", "abc", "ba", "a", "c", "bab");
+
+		// root + a, ab, abc, b, ba, bab, c
+		Assert.assertEquals(trie.size(), 8);
+		Assert.assertEquals(getNode(trie, "a"), 1);
+		Assert.assertEquals(getNode(trie, "ab"), 2);
+		Assert.assertEquals(getNode(trie, "abc"), 3);
+		Assert.assertEquals(getNode(trie, "b"), 4);
+		Assert.assertEquals(getNode(trie, "bab"), 6);
+		Assert.assertEquals(getNode(trie, "c"), 7);
+		Assert.assertEquals(trie.getParent(CompactTrie.ROOT), CompactTrie.NONE);
+		Assert.assertEquals(trie.getLabel(getNode(trie, "ba")), alphabet.getId('a'));
+
+		List<String> keys = new ArrayList<>();
+		traverse(trie, CompactTrie.ROOT, keys);
+		Assert.assertEquals(keys.toString(), "[a, ab, abc, b, ba, bab, c]");
+	}
+
+	@Test
+	public void childByCharacter() {
+		CompactTrie trie = makeTrie("ax", "ay", "az");
+		int a = getChild(trie, CompactTrie.ROOT, 'a');
+
+		Assert.assertEquals(getChild(trie, a, 'y'), getNode(trie, "ay"));
+		Assert.assertEquals(getChild(trie, a, 'b'), CompactTrie.NONE);
+		Assert.assertEquals(getChild(trie, getNode(trie, "az"), 'a'), CompactTrie.NONE);
+	}
+
+	@Test
+	public void emptyTrie() {
+		CompactTrie trie = makeTrie();
+
+		Assert.assertEquals(trie.size(), 1);
+		Assert.assertEquals(trie.getFirstChild(CompactTrie.ROOT), CompactTrie.NONE);
+		Assert.assertEquals(getNode(trie, "a"), CompactTrie.NONE);
+	}
+}